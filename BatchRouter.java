@@ -0,0 +1,243 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * <p>
+ * Answers many shortest path queries on one loaded map,
+ * read as start and destination pairs from a text file,
+ * one pair per line.
+ * </p>
+ *
+ * <p>
+ * Pairs are streamed in and routed on a fork-join pool
+ * with one worker per core, all sharing the same router.
+ * At most a fixed window of queries is in flight at once.
+ * Answers are written in the order the pairs were read,
+ * waiting on the oldest query whenever the window is full,
+ * so neither the pairs nor the answers are ever all held
+ * in memory at once.
+ * </p>
+ *
+ * <p>
+ * Each answer is one tab separated line of the start, the
+ * destination, the length in miles and the path:
+ * {@code ITS  HYLAN  0.43  ITS -> i5 -> HYLAN}
+ * or {@code not connected} / {@code unknown intersection}
+ * in place of the length and path.
+ * </p>
+ *
+ * @author Kyounghan (Kevin) Min
+ */
+public class BatchRouter {
+	private static final int WINDOW_PER_THREAD = 64; // queries in flight per worker
+
+	private Router router;
+	private Map<String, Integer> D;
+	private Map<Integer, String> RevD;
+	private Router.Algorithm algorithm;
+	private int threads;
+
+	private long[] latencies; // query times in nanoseconds, sorted after each run
+	private int count;
+	private long elapsed;
+
+	/**
+	 * One query and its answer.
+	 */
+	private static class Answer {
+		String from, to;
+		Route route;
+		String error;
+		boolean routed;
+		long nanos;
+	}
+
+	/**
+	 * Creates a batch router using one worker per core.
+	 *
+	 * @param router    The router of the map.
+	 * @param D         The key dictionary.
+	 * @param RevD      The reversed key dictionary.
+	 * @param algorithm The algorithm to use.
+	 */
+	BatchRouter(Router router, Map<String, Integer> D, Map<Integer, String> RevD, Router.Algorithm algorithm) {
+		this(router, D, RevD, algorithm, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a batch router.
+	 *
+	 * @param router    The router of the map.
+	 * @param D         The key dictionary.
+	 * @param RevD      The reversed key dictionary.
+	 * @param algorithm The algorithm to use.
+	 * @param threads   Number of worker threads.
+	 */
+	BatchRouter(Router router, Map<String, Integer> D, Map<Integer, String> RevD, Router.Algorithm algorithm, int threads) {
+		this.router = router;
+		this.D = D;
+		this.RevD = RevD;
+		this.algorithm = algorithm;
+		this.threads = threads;
+	}
+
+	/**
+	 * Routes every pair in the pairs file and writes the answers
+	 * to the output file, or to the console if it is null.
+	 *
+	 * @param pairsFile The path to the pairs text file.
+	 * @param outFile   The path to the output text file, or null.
+	 * @throws IOException If a file could not be read or written, or a line is not a pair.
+	 */
+	public void run(String pairsFile, String outFile) throws IOException {
+		try(BufferedReader in = new BufferedReader(new FileReader(pairsFile))) {
+			if(outFile == null) {
+				Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+				run(in, out);
+				out.flush();
+			} else {
+				try(Writer out = new BufferedWriter(new FileWriter(outFile))) {
+					run(in, out);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Routes every pair read from in and writes the answers to out.
+	 *
+	 * @param in  Reader of the pairs.
+	 * @param out Writer for the answers.
+	 * @throws IOException If reading or writing failed, or a line is not a pair.
+	 */
+	public void run(BufferedReader in, Writer out) throws IOException {
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		ArrayDeque<ForkJoinTask<Answer>> window = new ArrayDeque<ForkJoinTask<Answer>>();
+		int limit = threads * WINDOW_PER_THREAD;
+		latencies = new long[1024];
+		count = 0;
+		elapsed = System.nanoTime();
+
+		try {
+			String line;
+			int lineNumber = 0;
+			while((line = in.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if(line.isEmpty()) continue;
+
+				String[] pair = line.split(line.indexOf('\t') >= 0 ? "\t+" : " +");
+				if(pair.length != 2)
+					throw new IOException("Line " + lineNumber + " of the pairs file is not a start and destination pair.");
+
+				if(window.size() == limit)
+					write(window.poll().join(), out);
+				window.add(pool.submit(() -> solve(pair[0], pair[1])));
+			}
+			while(!window.isEmpty())
+				write(window.poll().join(), out);
+		} finally {
+			pool.shutdownNow();
+		}
+
+		elapsed = System.nanoTime() - elapsed;
+		latencies = Arrays.copyOf(latencies, count);
+		Arrays.sort(latencies);
+	}
+
+	private Answer solve(String from, String to) {
+		Answer A = new Answer();
+		A.from = from;
+		A.to = to;
+		Integer u = D.get(from), v = D.get(to);
+		if(u == null || v == null) {
+			A.error = "unknown intersection";
+			return A;
+		}
+
+		long time = System.nanoTime();
+		A.route = router.route(u, v, algorithm);
+		A.nanos = System.nanoTime() - time;
+		A.routed = true;
+		if(A.route == null)
+			A.error = "not connected";
+		return A;
+	}
+
+	private void write(Answer A, Writer out) throws IOException {
+		out.write(A.from);
+		out.write('\t');
+		out.write(A.to);
+		out.write('\t');
+		if(A.error != null) {
+			out.write(A.error);
+		} else {
+			out.write(Double.toString(A.route.getMiles()));
+			out.write('\t');
+			int[] P = A.route.getPath();
+			for(int i = 0; i < P.length; i++) {
+				if(i > 0) out.write(" -> ");
+				out.write(RevD.get(P[i]));
+			}
+		}
+		out.write('\n');
+
+		if(A.routed) {
+			if(count == latencies.length)
+				latencies = Arrays.copyOf(latencies, 2*count);
+			latencies[count++] = A.nanos;
+		}
+	}
+
+	/**
+	 * Returns the number of queries that were routed in the last run,
+	 * leaving out pairs with unknown intersections.
+	 *
+	 * @return The number of queries.
+	 */
+	public int getQueryCount() {
+		return count;
+	}
+
+	/**
+	 * Returns how long the last run took from the first pair read
+	 * to the last answer written.
+	 *
+	 * @return The time in milliseconds.
+	 */
+	public double getElapsedMillis() {
+		return elapsed / 1e6;
+	}
+
+	/**
+	 * Returns the number of queries answered per second in the last run.
+	 *
+	 * @return Queries per second.
+	 */
+	public double getThroughput() {
+		return count / (elapsed / 1e9);
+	}
+
+	/**
+	 * Returns the time within which the given fraction of the
+	 * queries of the last run were routed.
+	 *
+	 * @param p The fraction, such as 0.5 for the median or 0.99.
+	 * @return The time in milliseconds, or 0 if nothing was routed.
+	 */
+	public double getLatencyMillis(double p) {
+		if(count == 0) return 0;
+		int i = (int) Math.ceil(p * count) - 1;
+		return latencies[Math.max(0, Math.min(count - 1, i))] / 1e6;
+	}
+}
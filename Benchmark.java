@@ -0,0 +1,450 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * <p>
+ * Measures how fast maps load, routes are found, distances
+ * to every intersection are found and map tiles are drawn,
+ * so that changes to any of them can be checked for
+ * slowdowns.
+ * </p>
+ *
+ * <p>
+ * The map is either a map file, such as {@code ur.txt}, or a
+ * synthetic grid or random geometric map of any size written
+ * by {@link SyntheticMap} to a temporary file. Each part is
+ * run a few times first so that the code is compiled before
+ * it is timed, and then reports its times along with how many
+ * garbage collections ran and how long they took, and, where
+ * the work is done on the measuring thread or threads started
+ * for it, how many bytes they allocated.
+ * </p>
+ *
+ * <p>
+ * Tiles are drawn without a window, so the benchmark also runs
+ * on machines without a display.
+ * </p>
+ *
+ * @author Kyounghan (Kevin) Min
+ */
+public class Benchmark {
+	private String dataFile;
+	private Router.Algorithm algorithm = Router.Algorithm.DIJKSTRA;
+	private int rounds = 5, warmup = 200, queries = 1000, tiles = 64;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private long seed = 7;
+	private double delta; // bucket width of delta-stepping, or 0 to pick one
+	private int[] ssspThreads = { 1, 2, 4, 8, 16 };
+
+	private Map<String, Integer> D;
+	private Map<Integer, String> RevD;
+	private List<double[]> V;
+	private double[] mapBounds;
+	private Graph G;
+	private Router router;
+	private int[] pairs; // start and destination of each query, one after another
+
+	/**
+	 * Counts garbage collections and allocations between
+	 * its creation and a call to {@link #report(long)}.
+	 */
+	private static class Probe {
+		private long collections, collectionMillis, allocated;
+		private List<Thread> workers; // started after the probe, all of whose allocations count
+
+		Probe() {
+			this(List.of());
+		}
+
+		/**
+		 * Creates a probe that also counts the allocations of
+		 * threads started after it, as they are added to a list.
+		 *
+		 * @param workers The threads, added as they start.
+		 */
+		Probe(List<Thread> workers) {
+			for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+				collections -= Math.max(0, gc.getCollectionCount());
+				collectionMillis -= Math.max(0, gc.getCollectionTime());
+			}
+			this.workers = workers;
+			allocated = -allocatedBytes(Thread.currentThread());
+		}
+
+		// Bytes a live thread allocated so far, or -1 if unknown
+		private static long allocatedBytes(Thread thread) {
+			ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			if(bean instanceof com.sun.management.ThreadMXBean)
+				return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(thread.getId());
+			return -1;
+		}
+
+		/**
+		 * Returns the garbage collections so far and the bytes allocated
+		 * by this thread and the workers per operation, for the given
+		 * number of operations. Allocations are left out if a worker
+		 * has already stopped.
+		 *
+		 * @param operations Number of operations, or 0 to leave out allocations.
+		 * @return The report.
+		 */
+		String report(long operations) {
+			long c = collections, t = collectionMillis;
+			for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+				c += Math.max(0, gc.getCollectionCount());
+				t += Math.max(0, gc.getCollectionTime());
+			}
+			String s = c + " GCs (" + t + " ms)";
+			long a = allocatedBytes(Thread.currentThread()), w;
+			for(Thread worker : workers) {
+				w = allocatedBytes(worker);
+				a = a < 0 || w < 0 ? -1 : a + w;
+			}
+			if(operations > 0 && a >= 0)
+				s += ", " + format((a + allocated) / (double) operations) + " bytes allocated per operation";
+			return s;
+		}
+	}
+
+	private static String format(double d) {
+		return String.format(Locale.ROOT, "%.1f", d);
+	}
+
+	/**
+	 * Loads the map a number of times and keeps the last copy.
+	 */
+	private void load() throws IOException {
+		double megabytes = new File(dataFile).length() / 1e6;
+		boolean snapshot = MapSnapshot.isSnapshot(dataFile);
+		long[] times = new long[rounds];
+		Probe probe = null;
+
+		for(int r = -1; r < rounds; r++) {
+			if(r == 0) probe = new Probe();
+			D = new HashMap<String, Integer>();
+			RevD = new HashMap<Integer, String>();
+			V = new ArrayList<double[]>();
+			mapBounds = new double[] { 0, 0, 0, 0 };
+			long time = System.nanoTime();
+			if(snapshot)
+				G = MapSnapshot.read(dataFile, D, RevD, V, mapBounds);
+			else
+				G = MapParser.parse(dataFile, D, RevD, V, mapBounds);
+			time = System.nanoTime() - time;
+			if(r >= 0) times[r] = time;
+		}
+		Arrays.sort(times);
+
+		System.out.println("Map: " + G.getSize() + " intersections, " + G.getEdgeCount() / 2 + " roads, "
+				+ format(megabytes) + " MB");
+		double median = times[rounds / 2] / 1e6;
+		System.out.println("Load: median " + format(median) + " ms, best " + format(times[0] / 1e6) + " ms, "
+				+ format(megabytes / (median / 1e3)) + " MB/s, " + probe.report(rounds));
+	}
+
+	/**
+	 * Picks random pairs of intersections that have roads, so that
+	 * every algorithm and every run is given the same queries.
+	 */
+	private void pickPairs() {
+		int n = G.getSize(), k = 0;
+		int[] roads = new int[n];
+		for(int i = 0; i < n; i++)
+			if(G.getDegree(i) > 0) roads[k++] = i;
+		if(k == 0) throw new IllegalStateException("The map has no roads.");
+
+		Random random = new Random(seed);
+		pairs = new int[2 * (warmup + queries)];
+		for(int i = 0; i < pairs.length; i++)
+			pairs[i] = roads[random.nextInt(k)];
+	}
+
+	/**
+	 * Times single queries one after another on this thread.
+	 */
+	private void query() {
+		long time = System.nanoTime();
+		router.route(pairs[0], pairs[1], algorithm); // builds the hierarchy or landmarks if needed
+		time = System.nanoTime() - time;
+		if(algorithm == Router.Algorithm.CH || algorithm == Router.Algorithm.ALT)
+			System.out.println("Preprocessing: " + format(time / 1e6) + " ms");
+
+		for(int i = 0; i < warmup; i++)
+			router.route(pairs[2*i], pairs[2*i + 1], algorithm);
+
+		long[] times = new long[queries];
+		long settled = 0;
+		int found = 0;
+		Probe probe = new Probe();
+		for(int i = 0; i < queries; i++) {
+			int u = pairs[2*(warmup + i)], v = pairs[2*(warmup + i) + 1];
+			time = System.nanoTime();
+			Route R = router.route(u, v, algorithm);
+			times[i] = System.nanoTime() - time;
+			if(R != null) {
+				settled += R.getSettled();
+				found++;
+			}
+		}
+		String gc = probe.report(queries);
+		Arrays.sort(times);
+
+		long total = 0;
+		for(long t : times)
+			total += t;
+		System.out.println("Query (" + algorithm.toString().toLowerCase() + "): mean "
+				+ format(total / 1e3 / queries) + " us, p50 " + format(percentile(times, 0.5) / 1e3)
+				+ " us, p90 " + format(percentile(times, 0.9) / 1e3) + " us, p99 "
+				+ format(percentile(times, 0.99) / 1e3) + " us, " + found + " of " + queries + " connected, "
+				+ (found == 0 ? 0 : settled / found) + " settled per route, " + gc);
+	}
+
+	private static long percentile(long[] sorted, double p) {
+		int i = (int) Math.ceil(p * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, i))];
+	}
+
+	/**
+	 * Times the same queries as a batch on all threads.
+	 */
+	private void batch() throws IOException {
+		StringBuilder text = new StringBuilder();
+		for(int i = 0; i < pairs.length; i += 2)
+			text.append(RevD.get(pairs[i])).append('\t').append(RevD.get(pairs[i + 1])).append('\n');
+
+		BatchRouter batch = new BatchRouter(router, D, RevD, algorithm, threads);
+		batch.run(new BufferedReader(new StringReader(text.toString())), Writer.nullWriter()); // warming up
+		Probe probe = new Probe();
+		batch.run(new BufferedReader(new StringReader(text.toString())), Writer.nullWriter());
+		System.out.println("Batch (" + threads + " threads): " + format(batch.getThroughput()) + " queries/s, p50 "
+				+ format(batch.getLatencyMillis(0.5) * 1e3) + " us, p99 "
+				+ format(batch.getLatencyMillis(0.99) * 1e3) + " us, " + probe.report(0));
+	}
+
+	/**
+	 * Times finding the distances from a few intersections to
+	 * every other, first with Dijkstra's algorithm and then with
+	 * delta-stepping on each number of threads, and checks that
+	 * both give the same distances, also with buckets 100 and
+	 * 300 meters wide.
+	 */
+	private void sssp() {
+		int sources = Math.max(1, rounds);
+		long[] times = new long[sources];
+		double[][] expected = new double[sources][];
+		for(int r = -1; r < sources; r++) {
+			int u = pairs[2 * Math.max(0, r)];
+			SearchSpace S = router.acquire();
+			long time = System.nanoTime();
+			Utility.DijkstraAll(G, S, u);
+			time = System.nanoTime() - time;
+			if(r >= 0) {
+				times[r] = time;
+				expected[r] = new double[G.getSize()];
+				for(int i = 0; i < expected[r].length; i++)
+					expected[r][i] = S.getDist(i);
+			}
+			router.release(S);
+		}
+		Arrays.sort(times);
+		double sequential = times[sources / 2] / 1e6;
+		System.out.println("Distances to all (dijkstra): median " + format(sequential) + " ms");
+
+		double width = delta > 0 ? delta : DeltaStepping.suggestDelta(G);
+		for(int t : ssspThreads) {
+			// Workers start as they are first needed, so all of them after the probe
+			List<Thread> workers = new CopyOnWriteArrayList<Thread>();
+			ForkJoinPool pool = new ForkJoinPool(t, p -> {
+				ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+				workers.add(worker);
+				return worker;
+			}, null, false);
+			DeltaStepping search = new DeltaStepping(G, width, pool);
+			Probe probe = new Probe(workers);
+			boolean same = true;
+			for(int r = -1; r < sources; r++) {
+				long time = System.nanoTime();
+				double[] D = search.distances(pairs[2 * Math.max(0, r)]);
+				time = System.nanoTime() - time;
+				if(r < 0) continue;
+				times[r] = time;
+				same &= same(D, expected[r]);
+			}
+			String gc = probe.report(sources + 1);
+			pool.shutdown();
+			Arrays.sort(times);
+			double median = times[sources / 2] / 1e6;
+			System.out.println("Distances to all (delta-stepping, " + t + " threads, delta " + format(width * 1e3)
+					+ " m): median " + format(median) + " ms, " + format(sequential / median) + "x dijkstra, "
+					+ search.getPhaseCount() + " rounds, " + (same ? "same distances" : "DIFFERENT DISTANCES")
+					+ ", " + gc);
+		}
+
+		// Widths that are not powers of two, where distances near a bucket's edge round either way
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		for(double check : new double[] { 0.1, 0.3 }) {
+			String result;
+			try {
+				DeltaStepping search = new DeltaStepping(G, check, pool);
+				boolean same = true;
+				for(int r = 0; r < sources; r++)
+					same &= same(search.distances(pairs[2*r]), expected[r]);
+				result = same ? "same distances" : "DIFFERENT DISTANCES";
+			} catch (IllegalArgumentException e) {
+				result = "too narrow for this map";
+			}
+			System.out.println("Distances to all (delta-stepping, delta " + format(check * 1e3) + " m): " + result);
+		}
+		pool.shutdown();
+	}
+
+	private static boolean same(double[] D, double[] expected) {
+		for(int i = 0; i < D.length; i++)
+			if(Math.abs(D[i] - expected[i]) > 1e-9 * Math.max(1, expected[i]) && D[i] != expected[i])
+				return false;
+		return true;
+	}
+
+	/**
+	 * Times building the road index and drawing tiles from
+	 * the whole map down to the level where a tile is about
+	 * as wide as a few roads, sampling at most a set number
+	 * of tiles per level.
+	 */
+	private void render() {
+		long time = System.nanoTime();
+		RoadIndex index = new RoadIndex(G, V, mapBounds);
+		time = System.nanoTime() - time;
+		TileRenderer renderer = new TileRenderer(index, mapBounds);
+		System.out.println("Road index: " + format(time / 1e6) + " ms");
+
+		// Going down until a tile holds about a thousand roads
+		int deepest = 0;
+		while(deepest < TileRenderer.MAX_LEVEL
+				&& (long) renderer.getColumns(deepest) * renderer.getRows(deepest) * 1000 < G.getEdgeCount() / 2)
+			deepest++;
+
+		Random random = new Random(seed);
+		for(int z = 0; z <= deepest; z++) {
+			int columns = renderer.getColumns(z), rows = renderer.getRows(z);
+			int count = (int) Math.min(tiles, (long) columns * rows);
+			int[] tx = new int[count], ty = new int[count];
+			for(int i = 0; i < count; i++) {
+				if(count == (long) columns * rows) {
+					tx[i] = i % columns;
+					ty[i] = i / columns;
+				} else {
+					tx[i] = random.nextInt(columns);
+					ty[i] = random.nextInt(rows);
+				}
+			}
+
+			for(int i = 0; i < count; i++)
+				renderer.render(z, tx[i], ty[i]);
+			Probe probe = new Probe();
+			time = System.nanoTime();
+			for(int i = 0; i < count; i++)
+				renderer.render(z, tx[i], ty[i]);
+			time = System.nanoTime() - time;
+			System.out.println("Tiles at level " + z + ": " + format(time / 1e6 / count) + " ms per tile over "
+					+ count + " tiles, " + probe.report(count));
+		}
+	}
+
+	/**
+	 * Runs the benchmarks from the command line:
+	 * {@code <map_file_path | grid:<width>x<height> | geometric:<intersections>> [options]}
+	 *
+	 * @param args The arguments.
+	 * @throws IOException If the map could not be written or read.
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length < 1) {
+			System.out.println("Usage: Benchmark <map_file_path | grid:<width>x<height> | geometric:<intersections>>");
+			System.out.println("       [--algorithm <name>] [--queries <n>] [--warmup <n>] [--rounds <n>]");
+			System.out.println("       [--threads <n>] [--tiles <n>] [--seed <n>] [--delta <km>]");
+			System.out.println("       [--sssp-threads <n>,<n>,...]");
+			return;
+		}
+		System.setProperty("java.awt.headless", "true");
+
+		Benchmark B = new Benchmark();
+		for(int k = 1; k < args.length; k++) {
+			switch(args[k]) {
+			case "--algorithm":
+				B.algorithm = Router.Algorithm.valueOf(args[++k].toUpperCase());
+				break;
+			case "--queries":
+				B.queries = Integer.parseInt(args[++k]);
+				break;
+			case "--warmup":
+				B.warmup = Integer.parseInt(args[++k]);
+				break;
+			case "--rounds":
+				B.rounds = Integer.parseInt(args[++k]);
+				break;
+			case "--threads":
+				B.threads = Integer.parseInt(args[++k]);
+				break;
+			case "--tiles":
+				B.tiles = Integer.parseInt(args[++k]);
+				break;
+			case "--seed":
+				B.seed = Long.parseLong(args[++k]);
+				break;
+			case "--delta":
+				B.delta = Double.parseDouble(args[++k]);
+				break;
+			case "--sssp-threads":
+				B.ssspThreads = Arrays.stream(args[++k].split(",")).mapToInt(Integer::parseInt).toArray();
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[k]);
+			}
+		}
+
+		// Writing a synthetic map if asked for one
+		String map = args[0];
+		if(map.startsWith("grid:") || map.startsWith("geometric:")) {
+			File temp = File.createTempFile("synthetic", ".txt");
+			temp.deleteOnExit();
+			long time = System.nanoTime();
+			if(map.startsWith("grid:")) {
+				String[] size = map.substring(5).split("x");
+				SyntheticMap.grid(temp.getPath(), Integer.parseInt(size[0]), Integer.parseInt(size[1]), B.seed);
+			} else {
+				SyntheticMap.geometric(temp.getPath(), Integer.parseInt(map.substring(10)), B.seed);
+			}
+			System.out.println("Generated " + map + " in " + format((System.nanoTime() - time) / 1e6) + " ms");
+			map = temp.getPath();
+		}
+		B.dataFile = map;
+
+		System.out.println("Java " + System.getProperty("java.version") + ", "
+				+ Runtime.getRuntime().availableProcessors() + " processors, "
+				+ Runtime.getRuntime().maxMemory() / (1 << 20) + " MB heap");
+		B.load();
+		B.router = new Router(B.G, B.V);
+		B.pickPairs();
+		B.query();
+		B.batch();
+		B.sssp();
+		B.render();
+	}
+}
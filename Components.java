@@ -0,0 +1,156 @@
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * <p>
+ * The connected components of a map graph: groups of
+ * intersections that can all reach each other by road.
+ * Two intersections in different components are never
+ * connected, which can then be told without any search.
+ * </p>
+ *
+ * <p>
+ * The components are found with a union-find over the roads,
+ * on all processor cores at once. Each set points towards its
+ * smallest vertex, and a set is only ever joined to one with
+ * a smaller root by a compare-and-set on its own root, so no
+ * locks are needed and the pointers can never form a cycle.
+ * Finding a root halves the path to it as it goes.
+ * </p>
+ *
+ * <p>
+ * Components are numbered from 0 in order of their smallest
+ * vertex. Once found they never change, so they may be read
+ * by any number of threads.
+ * </p>
+ *
+ * @author Kyounghan (Kevin) Min
+ */
+public class Components {
+	private int[] label; // component of each vertex
+	private int[] sizes; // number of vertices in each component
+	private int largest;
+	private long buildTime;
+
+	/**
+	 * Finds the connected components of a graph.
+	 *
+	 * @param G The graph.
+	 */
+	Components(Graph G) {
+		long start = System.nanoTime();
+		int n = G.getSize();
+		AtomicIntegerArray parent = new AtomicIntegerArray(n);
+		for(int i = 0; i < n; i++)
+			parent.set(i, i);
+
+		// Each road is seen from both ends, and joined from the smaller one
+		IntStream.range(0, n).parallel().forEach(u -> {
+			for(int e = G.edgeStart(u); e < G.edgeEnd(u); e++)
+				if(G.getTarget(e) > u) union(parent, u, G.getTarget(e));
+		});
+
+		// Roots are the smallest vertex of their set, so they are numbered first
+		int[] root = new int[n];
+		IntStream.range(0, n).parallel().forEach(u -> root[u] = find(parent, u));
+		label = new int[n];
+		int count = 0;
+		for(int u = 0; u < n; u++) {
+			if(root[u] == u) label[u] = count++;
+			else label[u] = label[root[u]];
+		}
+		sizes = new int[count];
+		for(int u = 0; u < n; u++)
+			sizes[label[u]]++;
+		for(int c = 0; c < count; c++)
+			largest = Math.max(largest, sizes[c]);
+		buildTime = System.nanoTime() - start;
+	}
+
+	private static int find(AtomicIntegerArray parent, int x) {
+		int p, g;
+		while((p = parent.get(x)) != x) {
+			g = parent.get(p);
+			if(g != p) parent.compareAndSet(x, p, g);
+			x = g;
+		}
+		return x;
+	}
+
+	private static void union(AtomicIntegerArray parent, int a, int b) {
+		while(true) {
+			a = find(parent, a);
+			b = find(parent, b);
+			if(a == b) return;
+			if(a < b) {
+				int t = a;
+				a = b;
+				b = t;
+			}
+
+			// Linking the larger root under the smaller, unless it stopped being a root
+			if(parent.compareAndSet(a, a, b)) return;
+		}
+	}
+
+	/**
+	 * Returns the component of vertex u.
+	 *
+	 * @param u The vertex.
+	 * @return The component number.
+	 */
+	public int getLabel(int u) {
+		return label[u];
+	}
+
+	/**
+	 * Reveals whether two vertices are in the same component.
+	 * If not, they are not connected. If so, they are connected
+	 * unless roads have been closed since the map was loaded.
+	 *
+	 * @param u One vertex.
+	 * @param v The other vertex.
+	 * @return Whether u and v are in the same component.
+	 */
+	public boolean isSameComponent(int u, int v) {
+		return label[u] == label[v];
+	}
+
+	/**
+	 * Returns the number of components, counting each
+	 * intersection without roads as one.
+	 *
+	 * @return The number of components.
+	 */
+	public int getCount() {
+		return sizes.length;
+	}
+
+	/**
+	 * Returns the number of vertices in a component.
+	 *
+	 * @param c The component number.
+	 * @return The number of vertices.
+	 */
+	public int getSize(int c) {
+		return sizes[c];
+	}
+
+	/**
+	 * Returns the number of vertices in the largest component.
+	 *
+	 * @return The number of vertices.
+	 */
+	public int getLargestSize() {
+		return largest;
+	}
+
+	/**
+	 * Returns how long finding the components took.
+	 *
+	 * @return The time in milliseconds.
+	 */
+	public double getBuildMillis() {
+		return buildTime / 1e6;
+	}
+}
@@ -0,0 +1,703 @@
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Contraction hierarchy over a map graph, for answering
+ * many shortest path queries quickly.
+ * </p>
+ *
+ * <p>
+ * Preprocessing removes ("contracts") the vertices one by one,
+ * least important first. Whenever removing a vertex v would
+ * break the only shortest path between two of its remaining
+ * neighbors, a shortcut edge that skips v is added between them.
+ * A vertex is more important the more shortcuts its contraction
+ * adds relative to the edges it removes, and the more of its
+ * neighbors are already contracted.
+ * </p>
+ *
+ * <p>
+ * A query then runs two Dijkstra searches, from the starting and
+ * the ending vertex, that only ever move to more important
+ * vertices. They meet at the most important vertex of a shortest
+ * path, and the shortcuts along it are unpacked back into the
+ * original intersections.
+ * </p>
+ *
+ * <p>
+ * When roads only get longer or close, the hierarchy can be
+ * repaired instead of built again. The order of the vertices
+ * is kept, the lengths of the shortcuts over a changed road
+ * are worked out again from the edges they skip, and only
+ * the vertices whose contraction could have relied on a
+ * changed road are contracted again. That is most of the
+ * vertices near the road and a few at the top of the hierarchy,
+ * rather than all of them.
+ * </p>
+ *
+ * <p>
+ * The hierarchy is immutable once built, so one instance may be
+ * shared by any number of threads, each with its own search spaces.
+ * A repair makes a new one.
+ * </p>
+ *
+ * @author Kyounghan (Kevin) Min
+ */
+public class ContractionHierarchy {
+	private static final int WITNESS_LIMIT = 100; // vertices settled per witness search
+	private static final int ESTIMATE_LIMIT = 20; // same, when only estimating priorities
+
+	private Graph G;
+	private int n;
+	private int[] rank;
+
+	// Upward graph: edges from each vertex to more important vertices
+	private int[] upOffsets;
+	private int[] upTargets;
+	private double[] upWeights;
+	private int[] upMiddle; // contracted vertex a shortcut skips, or -1
+
+	private int shortcuts, recontracted;
+	private long buildTime;
+
+	// Working adjacency lists of uncontracted vertices, only used during preprocessing
+	private int[][] adjT;
+	private double[][] adjW;
+	private int[][] adjM;
+	private int[] deg;
+	private int[] target; // stamp of the witness search a vertex is a target of
+	private int stamp;
+	private boolean[] pending; // vertices to contract again while repairing
+
+	/**
+	 * Preprocesses the graph into a contraction hierarchy.
+	 *
+	 * @param G The graph.
+	 */
+	ContractionHierarchy(Graph G) {
+		long start = System.nanoTime();
+		this.G = G;
+		n = G.getSize();
+		rank = new int[n];
+		target = new int[n];
+		int[] deleted = new int[n]; // contracted neighbor count
+		int[] level = new int[n]; // longest chain of contracted vertices below
+		int i, j, e, v;
+
+		// Copying the graph, keeping only the shortest of parallel edges
+		// and leaving out closed roads
+		adjT = new int[n][];
+		adjW = new double[n][];
+		adjM = new int[n][];
+		deg = new int[n];
+		for(i = 0; i < n; i++) {
+			adjT[i] = new int[Math.max(G.getDegree(i), 2)];
+			adjW[i] = new double[adjT[i].length];
+			adjM[i] = new int[adjT[i].length];
+			for(e = G.edgeStart(i); e < G.edgeEnd(i); e++)
+				if(G.getTarget(e) != i && G.getWeight(e) < Double.POSITIVE_INFINITY)
+					addOrLower(i, G.getTarget(e), G.getWeight(e), -1);
+		}
+
+		// Contracting vertices in order of importance, with lazy updates
+		SearchSpace S = new SearchSpace(n);
+		IndexedHeap order = new IndexedHeap(n);
+		for(i = 0; i < n; i++)
+			order.push(i, priority(S, i, 0, 0));
+
+		double p;
+		int a;
+		for(int r = 0; r < n; r++) {
+			v = order.pop();
+			p = priority(S, v, deleted[v], level[v]);
+			if(!order.isEmpty() && p > order.peekKey()) {
+				order.push(v, p);
+				r--;
+				continue;
+			}
+
+			shortcuts += contract(S, v, WITNESS_LIMIT, true);
+			rank[v] = r;
+
+			// Neighbors lose an edge and may gain shortcuts, so their priorities change
+			for(j = 0; j < deg[v]; j++) {
+				a = adjT[v][j];
+				remove(a, v);
+				deleted[a]++;
+				level[a] = Math.max(level[a], level[v] + 1);
+				order.update(a, priority(S, a, deleted[a], level[a]));
+			}
+		}
+
+		// A contracted vertex only kept edges to vertices contracted after it,
+		// so what is left are the upward edges, in compressed sparse row form
+		upOffsets = new int[n+1];
+		for(i = 0; i < n; i++)
+			upOffsets[i+1] = upOffsets[i] + deg[i];
+
+		upTargets = new int[upOffsets[n]];
+		upWeights = new double[upOffsets[n]];
+		upMiddle = new int[upOffsets[n]];
+		for(i = 0; i < n; i++) {
+			System.arraycopy(adjT[i], 0, upTargets, upOffsets[i], deg[i]);
+			System.arraycopy(adjW[i], 0, upWeights, upOffsets[i], deg[i]);
+			System.arraycopy(adjM[i], 0, upMiddle, upOffsets[i], deg[i]);
+		}
+
+		adjT = adjM = null;
+		adjW = null;
+		deg = null;
+		target = null;
+		buildTime = System.nanoTime() - start;
+	}
+
+	private ContractionHierarchy() {
+	}
+
+	/**
+	 * Repairs the hierarchy for a graph with the same roads as
+	 * this one's, such as one made from it with new weights,
+	 * in which no road is shorter. The vertex order is kept,
+	 * so routes stay as fast to find as before.
+	 *
+	 * <p>
+	 * A vertex had to be contracted again if the witness path
+	 * that let its contraction leave out a shortcut may have
+	 * got longer. Such a path is no longer than the two longest
+	 * edges of the vertex together, so every vertex and road on
+	 * it is within that distance of the vertex; a vertex is only
+	 * contracted again if a changed road is that near to it,
+	 * or if contracting a vertex below it gave it a new or
+	 * shorter edge.
+	 * </p>
+	 *
+	 * @param g The graph with the new road lengths.
+	 * @return The repaired hierarchy, or null if some road of
+	 * g is shorter, or g has different roads, so that the
+	 * hierarchy has to be built again.
+	 */
+	ContractionHierarchy repair(Graph g) {
+		long start = System.nanoTime();
+		if(g.getSize() != n || g.getEdgeCount() != G.getEdgeCount()) return null;
+
+		// Finding the roads that got longer
+		boolean[] changed = new boolean[n];
+		int[] sources = new int[16];
+		int count = 0, i, j, e, x, t, m;
+		for(i = 0; i < n; i++) {
+			if(g.edgeStart(i) != G.edgeStart(i) || g.edgeEnd(i) != G.edgeEnd(i)) return null;
+			for(e = g.edgeStart(i); e < g.edgeEnd(i); e++) {
+				if(g.getTarget(e) != G.getTarget(e) || g.getWeight(e) < G.getWeight(e)) return null;
+				if(g.getWeight(e) > G.getWeight(e) && !changed[i]) {
+					changed[i] = true;
+					if(count == sources.length) sources = Arrays.copyOf(sources, 2*count);
+					sources[count++] = i;
+				}
+			}
+		}
+
+		ContractionHierarchy H = new ContractionHierarchy();
+		H.G = g;
+		H.n = n;
+		H.rank = rank;
+		if(count == 0) {
+			H.upOffsets = upOffsets;
+			H.upTargets = upTargets;
+			H.upWeights = upWeights;
+			H.upMiddle = upMiddle;
+			H.shortcuts = shortcuts;
+			H.buildTime = System.nanoTime() - start;
+			return H;
+		}
+
+		// Working graph of every upward edge, seen from both ends
+		int[] degree = new int[n];
+		for(i = 0; i < n; i++)
+			for(e = upOffsets[i]; e < upOffsets[i+1]; e++) {
+				degree[i]++;
+				degree[upTargets[e]]++;
+			}
+		H.adjT = new int[n][];
+		H.adjW = new double[n][];
+		H.adjM = new int[n][];
+		H.deg = new int[n];
+		for(i = 0; i < n; i++) {
+			H.adjT[i] = new int[Math.max(degree[i], 2)];
+			H.adjW[i] = new double[H.adjT[i].length];
+			H.adjM[i] = new int[H.adjT[i].length];
+		}
+		for(i = 0; i < n; i++)
+			for(e = upOffsets[i]; e < upOffsets[i+1]; e++) {
+				H.addOrLower(i, upTargets[e], upWeights[e], upMiddle[e]);
+				H.addOrLower(upTargets[e], i, upWeights[e], upMiddle[e]);
+			}
+		for(i = 0; i < n; i++)
+			H.sortByRank(i);
+
+		// Working out upward edge lengths again from the lowest vertex up, so
+		// that the two edges a shortcut skips are done before the shortcut
+		int[] byRank = new int[n];
+		for(i = 0; i < n; i++)
+			byRank[rank[i]] = i;
+		boolean[] touched = new boolean[n]; // some upward edge got longer
+		double w, o;
+		for(int r = 0; r < n; r++) {
+			x = byRank[r];
+			for(j = 0; j < H.deg[x]; j++) {
+				t = H.adjT[x][j];
+				m = H.adjM[x][j];
+				if(rank[t] < r || !(changed[x] && changed[t] || m != -1 && touched[m])) continue;
+
+				w = m == -1 ? Double.POSITIVE_INFINITY
+						: H.adjW[m][H.find(m, x)] + H.adjW[m][H.find(m, t)];
+				o = Double.POSITIVE_INFINITY;
+				for(e = g.edgeStart(x); e < g.edgeEnd(x); e++)
+					if(g.getTarget(e) == t && g.getWeight(e) < o) o = g.getWeight(e);
+				if(o <= w) {
+					w = o;
+					m = -1;
+				}
+				if(w == H.adjW[x][j] && m == H.adjM[x][j]) continue;
+
+				H.adjW[x][j] = w;
+				H.adjM[x][j] = m;
+				i = H.find(t, x);
+				H.adjW[t][i] = w;
+				H.adjM[t][i] = m;
+				touched[x] = true;
+			}
+		}
+
+		// Vertices near enough to a changed road to have had a witness over it
+		double[] reach = new double[n]; // the two longest upward edges together
+		double farthest = 0, first, second;
+		for(i = 0; i < n; i++) {
+			first = second = 0;
+			for(e = upOffsets[i]; e < upOffsets[i+1]; e++) {
+				if(upWeights[e] == Double.POSITIVE_INFINITY) continue;
+				if(upWeights[e] > first) {
+					second = first;
+					first = upWeights[e];
+				} else if(upWeights[e] > second) {
+					second = upWeights[e];
+				}
+			}
+			reach[i] = first + second;
+			farthest = Math.max(farthest, reach[i]);
+		}
+		SearchSpace S = new SearchSpace(n);
+		S.reset();
+		Isochrone near = Utility.DijkstraWithin(G, S, Arrays.copyOf(sources, count), farthest);
+		H.pending = new boolean[n];
+		for(i = 0; i < near.getCount(); i++)
+			if(near.getDistance(i) <= reach[near.getVertex(i)]) H.pending[near.getVertex(i)] = true;
+
+		// Contracting them again in the same order, along with every vertex
+		// given a new or shorter edge on the way
+		H.target = new int[n];
+		for(int r = 0; r < n; r++)
+			if(H.pending[byRank[r]]) {
+				H.recontract(S, byRank[r]);
+				H.recontracted++;
+			}
+
+		// Packing the upward edges, as when building
+		H.upOffsets = new int[n+1];
+		for(i = 0; i < n; i++) {
+			count = 0;
+			for(j = 0; j < H.deg[i]; j++)
+				if(rank[H.adjT[i][j]] > rank[i]) count++;
+			H.upOffsets[i+1] = H.upOffsets[i] + count;
+		}
+		H.upTargets = new int[H.upOffsets[n]];
+		H.upWeights = new double[H.upOffsets[n]];
+		H.upMiddle = new int[H.upOffsets[n]];
+		for(i = 0; i < n; i++) {
+			e = H.upOffsets[i];
+			for(j = 0; j < H.deg[i]; j++)
+				if(rank[H.adjT[i][j]] > rank[i]) {
+					H.upTargets[e] = H.adjT[i][j];
+					H.upWeights[e] = H.adjW[i][j];
+					if(H.adjM[i][j] != -1) H.shortcuts++;
+					H.upMiddle[e++] = H.adjM[i][j];
+				}
+		}
+
+		H.adjT = H.adjM = null;
+		H.adjW = null;
+		H.deg = null;
+		H.target = null;
+		H.pending = null;
+		H.buildTime = System.nanoTime() - start;
+		return H;
+	}
+
+	/**
+	 * Contracts vertex v of a hierarchy being repaired again,
+	 * adding or lowering the shortcuts between its upward
+	 * neighbors that are now needed, and marking the lower end
+	 * of each to be contracted again too.
+	 *
+	 * @return The number of shortcuts added or lowered.
+	 */
+	private int recontract(SearchSpace S, int v) {
+		int floor = rank[v], count = 0, k = 0, i, j, a, b, targets;
+		int[] up = new int[deg[v]];
+		double[] upW = new double[deg[v]];
+		double maxOut, via;
+		for(j = 0; j < deg[v] && rank[adjT[v][j]] > floor; j++)
+			if(adjW[v][j] < Double.POSITIVE_INFINITY) {
+				up[k] = adjT[v][j];
+				upW[k++] = adjW[v][j];
+			}
+
+		for(i = 0; i < k; i++) {
+			a = up[i];
+			stamp++;
+			targets = 0;
+			maxOut = 0;
+			for(j = i + 1; j < k; j++) {
+				target[up[j]] = stamp;
+				targets++;
+				if(upW[j] > maxOut) maxOut = upW[j];
+			}
+			if(targets == 0) break;
+
+			witnessSearch(S, a, v, upW[i] + maxOut, targets, WITNESS_LIMIT, floor);
+
+			for(j = i + 1; j < k; j++) {
+				b = up[j];
+				via = upW[i] + upW[j];
+				if(S.getDist(b) <= via) continue;
+
+				addOrLower(a, b, via, v);
+				if(addOrLower(b, a, via, v)) {
+					pending[rank[a] < rank[b] ? a : b] = true;
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Calculates the shortest path between two vertices.
+	 *
+	 * @param F The forward search space.
+	 * @param B The backward search space.
+	 * @param u Starting vertex.
+	 * @param v Ending vertex.
+	 * @return The route, or null if u and v are not connected.
+	 */
+	public Route route(SearchSpace F, SearchSpace B, int u, int v) {
+		IndexedHeap HF = F.getHeap(), HB = B.getHeap();
+		SearchSpace S, T;
+		IndexedHeap H;
+		int j, e, w, meet = -1;
+		double d, best = Double.POSITIVE_INFINITY;
+
+		F.reach(u, 0, -1);
+		B.reach(v, 0, -1);
+
+		// Each side stops once its next vertex is no closer than the best meeting
+		while(true) {
+			boolean f = !HF.isEmpty() && HF.peekKey() < best;
+			boolean b = !HB.isEmpty() && HB.peekKey() < best;
+			if(!f && !b) break;
+
+			if(f && (!b || HF.peekKey() <= HB.peekKey())) {
+				S = F;
+				T = B;
+				H = HF;
+			} else {
+				S = B;
+				T = F;
+				H = HB;
+			}
+
+			j = H.pop();
+			S.settle(j);
+			d = S.getDist(j) + T.getDist(j);
+			if(d < best) {
+				best = d;
+				meet = j;
+			}
+
+			for(e = upOffsets[j]; e < upOffsets[j+1]; e++) {
+				w = upTargets[e];
+				d = S.getDist(j) + upWeights[e];
+				if(d < S.getDist(w)) S.reach(w, d, j);
+			}
+		}
+
+		// End if graph is discontinuous
+		if(meet == -1) return null;
+
+		// Collecting the upward path u -> meet <- v
+		int kf = 0, kb = 0, i;
+		for(j = meet; j != -1; j = F.getParent(j))
+			kf++;
+		for(j = B.getParent(meet); j != -1; j = B.getParent(j))
+			kb++;
+		int[] up = new int[kf + kb];
+		i = kf;
+		for(j = meet; j != -1; j = F.getParent(j))
+			up[--i] = j;
+		i = kf;
+		for(j = B.getParent(meet); j != -1; j = B.getParent(j))
+			up[i++] = j;
+
+		return Route.fromPath(G, unpack(up), F.getSettledCount() + B.getSettledCount());
+	}
+
+	/**
+	 * Returns the number of shortcut edges added.
+	 *
+	 * @return The number of shortcuts.
+	 */
+	public int getShortcutCount() {
+		return shortcuts;
+	}
+
+	/**
+	 * Returns the number of vertices contracted again when
+	 * the hierarchy was made by repairing another one.
+	 *
+	 * @return The number of vertices, or 0 if it was built.
+	 */
+	public int getRecontractedCount() {
+		return recontracted;
+	}
+
+	/**
+	 * Returns the graph the hierarchy was built from. Its
+	 * routes are only right for that graph's road lengths.
+	 *
+	 * @return The graph.
+	 */
+	public Graph getGraph() {
+		return G;
+	}
+
+	/**
+	 * Returns how long preprocessing, or the repair that
+	 * made the hierarchy, took.
+	 *
+	 * @return The preprocessing time in milliseconds.
+	 */
+	public double getBuildMillis() {
+		return buildTime / 1e6;
+	}
+
+	/**
+	 * Replaces every shortcut in a path with the
+	 * original edges it stands for.
+	 *
+	 * @param up A path that may use shortcuts.
+	 * @return The path over original edges only.
+	 */
+	private int[] unpack(int[] up) {
+		int[] path = new int[Math.max(up.length, 16)];
+		int[] stack = new int[16];
+		int k = 0, top, a, b, m;
+		path[k++] = up[0];
+
+		for(int i = 0; i < up.length - 1; i++) {
+
+			// Splitting shortcuts on a stack until an original edge is left
+			top = 0;
+			stack[top++] = up[i+1];
+			a = up[i];
+			while(top > 0) {
+				b = stack[top-1];
+				m = middle(a, b);
+				if(m == -1) {
+					if(k == path.length) path = Arrays.copyOf(path, 2*k);
+					path[k++] = b;
+					a = b;
+					top--;
+				} else {
+					if(top == stack.length) stack = Arrays.copyOf(stack, 2*top);
+					stack[top++] = m;
+				}
+			}
+		}
+
+		return Arrays.copyOf(path, k);
+	}
+
+	/**
+	 * Returns the vertex skipped by the upward edge
+	 * between a and b, or -1 if it is an original edge.
+	 */
+	private int middle(int a, int b) {
+		int lo = rank[a] < rank[b] ? a : b, hi = lo == a ? b : a;
+		for(int e = upOffsets[lo]; e < upOffsets[lo+1]; e++)
+			if(upTargets[e] == hi) return upMiddle[e];
+		return -1;
+	}
+
+	/**
+	 * Returns the contraction priority of vertex v:
+	 * mostly shortcuts added minus edges removed, plus
+	 * the number of already contracted neighbors and
+	 * the level of v in the hierarchy so far, which
+	 * spread contraction evenly over the map.
+	 */
+	private double priority(SearchSpace S, int v, int deleted, int level) {
+		return 4*(contract(S, v, ESTIMATE_LIMIT, false) - deg[v]) + deleted + 2*level;
+	}
+
+	/**
+	 * Finds the shortcuts needed to contract vertex v,
+	 * adding them to the working graph if asked to.
+	 *
+	 * @return The number of shortcuts.
+	 */
+	private int contract(SearchSpace S, int v, int limit, boolean add) {
+		int count = 0, i, j, a, b, targets;
+		double maxOut, via;
+
+		for(i = 0; i < deg[v]; i++) {
+			a = adjT[v][i];
+
+			// Only pairs a-b with b after a are checked, so each pair is checked once
+			stamp++;
+			targets = 0;
+			maxOut = 0;
+			for(j = i + 1; j < deg[v]; j++) {
+				target[adjT[v][j]] = stamp;
+				targets++;
+				if(adjW[v][j] > maxOut) maxOut = adjW[v][j];
+			}
+			if(targets == 0) break;
+
+			witnessSearch(S, a, v, adjW[v][i] + maxOut, targets, limit, -1);
+
+			// A shortcut a-b is needed unless some path avoiding v is no longer
+			for(j = i + 1; j < deg[v]; j++) {
+				b = adjT[v][j];
+				via = adjW[v][i] + adjW[v][j];
+				if(S.getDist(b) <= via) continue;
+
+				count++;
+				if(add) {
+					addOrLower(a, b, via, v);
+					addOrLower(b, a, via, v);
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Runs a limited Dijkstra from vertex a over the
+	 * uncontracted vertices other than v, or when
+	 * repairing, over those ranked above floor, whose
+	 * working edges are then sorted by rank. It ends
+	 * once every target is settled, the distance limit
+	 * is passed, or enough vertices are settled.
+	 */
+	private void witnessSearch(SearchSpace S, int a, int v, double limit, int targets, int settled, int floor) {
+		IndexedHeap H = S.getHeap();
+		int j, k, w;
+		double d;
+
+		S.reset();
+		S.reach(a, 0, -1);
+		while(!H.isEmpty() && H.peekKey() <= limit && S.getSettledCount() < settled) {
+			j = H.pop();
+			S.settle(j);
+			if(target[j] == stamp && --targets == 0) break;
+
+			for(k = 0; k < deg[j]; k++) {
+				w = adjT[j][k];
+				if(rank[w] <= floor) break; // the rest are ranked lower too
+				if(w == v || S.isSettled(w)) continue;
+				d = S.getDist(j) + adjW[j][k];
+				if(d <= limit && d < S.getDist(w)) S.reach(w, d, j);
+			}
+		}
+	}
+
+	/**
+	 * Removes the working edge from u to v, if any.
+	 */
+	private void remove(int u, int v) {
+		for(int j = 0; j < deg[u]; j++)
+			if(adjT[u][j] == v) {
+				deg[u]--;
+				adjT[u][j] = adjT[u][deg[u]];
+				adjW[u][j] = adjW[u][deg[u]];
+				adjM[u][j] = adjM[u][deg[u]];
+				return;
+			}
+	}
+	
+	/**
+	 * Adds the working edge u-v, or lowers its weight
+	 * if it already exists with a larger one.
+	 *
+	 * @return Whether the edge was added or lowered.
+	 */
+	private boolean addOrLower(int u, int v, double w, int m) {
+		for(int j = 0; j < deg[u]; j++)
+			if(adjT[u][j] == v) {
+				if(w < adjW[u][j]) {
+					adjW[u][j] = w;
+					adjM[u][j] = m;
+					return true;
+				}
+				return false;
+			}
+
+		if(deg[u] == adjT[u].length) {
+			adjT[u] = Arrays.copyOf(adjT[u], 2*deg[u]);
+			adjW[u] = Arrays.copyOf(adjW[u], 2*deg[u]);
+			adjM[u] = Arrays.copyOf(adjM[u], 2*deg[u]);
+		}
+
+		// While repairing, the lists are kept sorted by rank, highest first
+		int j = deg[u]++;
+		if(pending != null) {
+			for(; j > 0 && rank[adjT[u][j-1]] < rank[v]; j--) {
+				adjT[u][j] = adjT[u][j-1];
+				adjW[u][j] = adjW[u][j-1];
+				adjM[u][j] = adjM[u][j-1];
+			}
+		}
+		adjT[u][j] = v;
+		adjW[u][j] = w;
+		adjM[u][j] = m;
+		return true;
+	}
+
+	/**
+	 * Sorts the working edges of u by the rank of their
+	 * other end, highest first.
+	 */
+	private void sortByRank(int u) {
+		long[] keys = new long[deg[u]];
+		for(int j = 0; j < deg[u]; j++)
+			keys[j] = (long) (n - rank[adjT[u][j]]) << 32 | j;
+		Arrays.sort(keys);
+		int[] T = new int[adjT[u].length], M = new int[adjT[u].length];
+		double[] W = new double[adjT[u].length];
+		for(int j = 0; j < deg[u]; j++) {
+			int k = (int) keys[j];
+			T[j] = adjT[u][k];
+			W[j] = adjW[u][k];
+			M[j] = adjM[u][k];
+		}
+		adjT[u] = T;
+		adjW[u] = W;
+		adjM[u] = M;
+	}
+
+	// Index of the working edge from u to v, or -1
+	private int find(int u, int v) {
+		for(int j = 0; j < deg[u]; j++)
+			if(adjT[u][j] == v) return j;
+		return -1;
+	}
+}
@@ -0,0 +1,246 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * Finds the road distance from one intersection to every
+ * other on all processor cores at once, with the
+ * delta-stepping algorithm of Meyer and Sanders.
+ * </p>
+ *
+ * <p>
+ * Dijkstra's algorithm settles one intersection at a time,
+ * nearest first. Delta-stepping instead sorts intersections
+ * into buckets of distances delta wide, and relaxes the roads
+ * of a whole bucket at once, in parallel, over and over until
+ * no distance in it gets shorter. A distance may then be
+ * lowered more than once, so the work grows with delta, while
+ * the number of rounds shrinks with it. A delta of about the
+ * length of a road works well on street maps.
+ * </p>
+ *
+ * <p>
+ * Distances are kept as the bits of non-negative doubles in
+ * an atomic array, which order the same way as the doubles,
+ * and are only ever lowered with a compare-and-set. Each
+ * worker puts the intersections it lowers into its own
+ * buckets, so no locks are needed, and the workers take the
+ * intersections of the current bucket in small chunks, so
+ * that they all finish a round at about the same time. An
+ * intersection may be put into a bucket more than once, and
+ * is skipped if it has been lowered into an earlier one since.
+ * </p>
+ *
+ * <p>
+ * No distance waiting in a bucket is more than the longest
+ * road past the current one, so only that many buckets are
+ * ever in use, and they are kept in a ring that later buckets
+ * take over as earlier ones empty. A delta so small that the
+ * ring would need more buckets than there are intersections
+ * is refused.
+ * </p>
+ *
+ * @author Kyounghan (Kevin) Min
+ */
+public class DeltaStepping {
+	private static final int CHUNK = 64; // intersections taken at a time from the current bucket
+	private static final long INFINITY = Double.doubleToRawLongBits(Double.POSITIVE_INFINITY);
+
+	private Graph G;
+	private double delta;
+	private ForkJoinPool pool;
+	private int ring; // number of buckets in use at once
+	private int phases;
+
+	/**
+	 * A worker's buckets of intersections to relax, bucket b
+	 * kept at b modulo the size of the ring.
+	 */
+	private static class Lane {
+		int[][] bins;
+		int[] sizes;
+
+		Lane(int ring) {
+			bins = new int[ring][];
+			sizes = new int[ring];
+		}
+
+		void add(long b, int u) {
+			int i = (int) (b % sizes.length);
+			if(bins[i] == null) bins[i] = new int[16];
+			else if(sizes[i] == bins[i].length) bins[i] = Arrays.copyOf(bins[i], 2 * sizes[i]);
+			bins[i][sizes[i]++] = u;
+		}
+
+		// The first nonempty bucket from b on, or Long.MAX_VALUE
+		long next(long b) {
+			for(long end = b + sizes.length; b < end; b++)
+				if(sizes[(int) (b % sizes.length)] > 0) return b;
+			return Long.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Creates a delta-stepping search.
+	 *
+	 * @param G     The graph.
+	 * @param delta The bucket width in kilometers.
+	 * @param pool  The threads to search on.
+	 * @throws IllegalArgumentException If delta is not positive, or
+	 * so small next to the longest road that more buckets than
+	 * intersections would be needed.
+	 */
+	DeltaStepping(Graph G, double delta, ForkJoinPool pool) {
+		if(!(delta > 0))
+			throw new IllegalArgumentException("The bucket width must be positive (delta " + delta + ").");
+		double longest = 0;
+		for(int e = 0; e < G.getEdgeCount(); e++)
+			if(G.getWeight(e) < Double.POSITIVE_INFINITY && G.getWeight(e) > longest)
+				longest = G.getWeight(e);
+		// A bucket's roads reach at most longest / delta buckets past it
+		if(longest / delta > G.getSize())
+			throw new IllegalArgumentException("The bucket width is too small for the longest road (delta "
+					+ delta + ", longest road " + longest + ").");
+		this.G = G;
+		this.delta = delta;
+		this.pool = pool;
+		ring = (int) (longest / delta) + 3; // one more for rounding in dw / delta
+	}
+
+	/**
+	 * Suggests a bucket width for a graph: the average
+	 * length of its roads.
+	 *
+	 * @param G The graph.
+	 * @return The bucket width in kilometers.
+	 */
+	public static double suggestDelta(Graph G) {
+		double total = 0;
+		long count = 0;
+		for(int e = 0; e < G.getEdgeCount(); e++)
+			if(G.getWeight(e) < Double.POSITIVE_INFINITY) {
+				total += G.getWeight(e);
+				count++;
+			}
+		return count == 0 || total == 0 ? 1 : total / count;
+	}
+
+	/**
+	 * Finds the distance from vertex u to every vertex.
+	 *
+	 * @param u Starting vertex.
+	 * @return The distance to each vertex in kilometers, or
+	 * infinity if it is not connected to u.
+	 */
+	public double[] distances(int u) {
+		int n = G.getSize();
+		AtomicLongArray dist = new AtomicLongArray(n);
+		for(int i = 0; i < n; i++)
+			dist.set(i, INFINITY);
+		dist.set(u, 0);
+
+		Lane[] lanes = new Lane[pool.getParallelism()];
+		for(int i = 0; i < lanes.length; i++)
+			lanes[i] = new Lane(ring);
+		lanes[0].add(0, u);
+
+		int[] frontier = new int[16];
+		long b = 0;
+		int slot;
+		phases = 0;
+		while(true) {
+			// Gathering the first nonempty bucket from every worker
+			long next = Long.MAX_VALUE;
+			for(Lane L : lanes)
+				next = Math.min(next, L.next(b));
+			if(next == Long.MAX_VALUE) break;
+			b = next;
+			slot = (int) (b % ring);
+			int size = 0;
+			for(Lane L : lanes) {
+				if(L.sizes[slot] == 0) continue;
+				if(size + L.sizes[slot] > frontier.length)
+					frontier = Arrays.copyOf(frontier, Math.max(size + L.sizes[slot], 2 * frontier.length));
+				System.arraycopy(L.bins[slot], 0, frontier, size, L.sizes[slot]);
+				size += L.sizes[slot];
+				L.sizes[slot] = 0;
+			}
+
+			relax(dist, lanes, frontier, size, b);
+			phases++;
+		}
+
+		double[] D = new double[n];
+		for(int i = 0; i < n; i++)
+			D[i] = Double.longBitsToDouble(dist.get(i));
+		return D;
+	}
+
+	// Relaxes the roads of every intersection in the frontier on all workers
+	private void relax(AtomicLongArray dist, Lane[] lanes, int[] frontier, int size, long b) {
+		AtomicInteger cursor = new AtomicInteger();
+		Runnable[] work = new Runnable[lanes.length];
+		for(int i = 0; i < lanes.length; i++) {
+			Lane L = lanes[i];
+			work[i] = () -> {
+				int start, end, j, e, w;
+				double d, dw;
+				long old;
+				while((start = cursor.getAndAdd(CHUNK)) < size) {
+					end = Math.min(start + CHUNK, size);
+					for(int k = start; k < end; k++) {
+						j = frontier[k];
+						d = Double.longBitsToDouble(dist.get(j));
+						// Lowered into an earlier bucket since, rounded as when it was added
+						if((long) (d / delta) < b) continue;
+
+						for(e = G.edgeStart(j); e < G.edgeEnd(j); e++) {
+							w = G.getTarget(e);
+							dw = d + G.getWeight(e);
+							while(dw < Double.longBitsToDouble(old = dist.get(w))) {
+								if(dist.compareAndSet(w, old, Double.doubleToRawLongBits(dw))) {
+									L.add((long) (dw / delta), w);
+									break;
+								}
+							}
+						}
+					}
+				}
+			};
+		}
+
+		// Small frontiers are not worth waking the other workers for
+		if(size <= CHUNK) {
+			work[0].run();
+			return;
+		}
+		pool.invoke(ForkJoinTask.adapt(() -> {
+			ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[work.length];
+			for(int i = 0; i < work.length; i++)
+				tasks[i] = ForkJoinTask.adapt(work[i]);
+			ForkJoinTask.invokeAll(tasks);
+		}));
+	}
+
+	/**
+	 * Returns the number of rounds the last search took, one
+	 * for each time a bucket was relaxed.
+	 *
+	 * @return The number of rounds.
+	 */
+	public int getPhaseCount() {
+		return phases;
+	}
+
+	/**
+	 * Returns the bucket width.
+	 *
+	 * @return The bucket width in kilometers.
+	 */
+	public double getDelta() {
+		return delta;
+	}
+}
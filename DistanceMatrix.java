@@ -0,0 +1,131 @@
+import java.util.stream.IntStream;
+
+/**
+ * <p>
+ * Table of shortest path distances from every one of
+ * a list of source vertices to every one of a list of
+ * target vertices.
+ * </p>
+ *
+ * <p>
+ * Instead of one search per source and target, there is
+ * one Dijkstra search per source, which stops as soon as
+ * all targets are settled. The rows are independent and
+ * computed in parallel on the common fork-join pool, each
+ * with a search space borrowed from the router.
+ * </p>
+ *
+ * <p>
+ * The distances are kept in one flat array, row by row.
+ * </p>
+ *
+ * @author Kyounghan (Kevin) Min
+ */
+public class DistanceMatrix {
+	private int rows, cols;
+	private double[] dist; // dist[i*cols + j] is the distance from source i to target j
+	private long buildTime;
+
+	/**
+	 * Creates a distance matrix from computed distances.
+	 *
+	 * @param dist Distances, indexed by source times target count plus target.
+	 * @param rows Number of sources.
+	 * @param cols Number of targets.
+	 */
+	DistanceMatrix(double[] dist, int rows, int cols) {
+		this.dist = dist;
+		this.rows = rows;
+		this.cols = cols;
+	}
+
+	/**
+	 * Computes the distances from every source to every target.
+	 *
+	 * @param router  The router of the map.
+	 * @param sources The source vertices.
+	 * @param targets The target vertices.
+	 * @return The distance matrix.
+	 */
+	static DistanceMatrix compute(Router router, int[] sources, int[] targets) {
+		long start = System.nanoTime();
+		Graph G = router.getGraph();
+		int rows = sources.length, cols = targets.length;
+
+		// Marking the targets, counting each vertex once per component,
+		// so that a search stops once it has every target it can reach
+		Components C = router.getComponents();
+		boolean[] isTarget = new boolean[G.getSize()];
+		int[] distinct = new int[C.getCount()];
+		for(int v : targets) {
+			if(!isTarget[v]) distinct[C.getLabel(v)]++;
+			isTarget[v] = true;
+		}
+
+		// One search per source, in parallel
+		double[] dist = new double[rows * cols];
+		IntStream.range(0, rows).parallel().forEach(i -> {
+			SearchSpace S = router.acquire();
+			try {
+				int count = distinct[C.getLabel(sources[i])];
+				if(count > 0) Utility.DijkstraMany(G, S, sources[i], isTarget, count);
+				for(int j = 0; j < cols; j++)
+					dist[i*cols + j] = S.isSettled(targets[j]) ? S.getDist(targets[j]) : Double.POSITIVE_INFINITY;
+			} finally {
+				router.release(S);
+			}
+		});
+
+		DistanceMatrix M = new DistanceMatrix(dist, rows, cols);
+		M.buildTime = System.nanoTime() - start;
+		return M;
+	}
+
+	/**
+	 * Returns the distance from a source to a target.
+	 *
+	 * @param i Index of the source.
+	 * @param j Index of the target.
+	 * @return The distance in kilometers, or infinity if they are not connected.
+	 */
+	public double get(int i, int j) {
+		return dist[i*cols + j];
+	}
+
+	/**
+	 * Returns all distances in one flat array, row by row.
+	 * The array is not copied.
+	 *
+	 * @return The distances in kilometers.
+	 */
+	public double[] getDistances() {
+		return dist;
+	}
+
+	/**
+	 * Returns the number of sources.
+	 *
+	 * @return The number of rows.
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * Returns the number of targets.
+	 *
+	 * @return The number of columns.
+	 */
+	public int getCols() {
+		return cols;
+	}
+
+	/**
+	 * Returns how long computing the matrix took.
+	 *
+	 * @return The time in milliseconds.
+	 */
+	public double getBuildMillis() {
+		return buildTime / 1e6;
+	}
+}
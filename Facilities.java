@@ -0,0 +1,88 @@
+import java.util.Arrays;
+
+/**
+ * <p>
+ * A set of special intersections, such as depots or
+ * stations, indexed once so that a search can tell in
+ * constant time whether it has reached one.
+ * </p>
+ *
+ * <p>
+ * Membership is kept in a bitset of one bit per intersection,
+ * so even a set over a map of millions of intersections takes
+ * little memory and stays in the processor cache. The number
+ * of facilities in each connected component is also counted,
+ * so that a search knows when there are none left to find.
+ * </p>
+ *
+ * <p>
+ * A facility set never changes once built, so it may be used
+ * by any number of searches at once.
+ * </p>
+ *
+ * @author Kyounghan (Kevin) Min
+ */
+public class Facilities {
+	private long[] bits;
+	private int[] vertices;
+	private int[] perComponent; // number of facilities in each component
+
+	/**
+	 * Indexes a set of facilities.
+	 *
+	 * @param vertices   The facility vertices. Repeats are counted once.
+	 * @param components The connected components of the graph.
+	 * @param n          Number of vertices in the graph.
+	 */
+	Facilities(int[] vertices, Components components, int n) {
+		bits = new long[(n + 63) >>> 6];
+		perComponent = new int[components.getCount()];
+		int[] distinct = new int[vertices.length];
+		int k = 0;
+		for(int u : vertices) {
+			if(contains(u)) continue;
+			bits[u >>> 6] |= 1L << u;
+			perComponent[components.getLabel(u)]++;
+			distinct[k++] = u;
+		}
+		this.vertices = Arrays.copyOf(distinct, k);
+	}
+
+	/**
+	 * Reveals whether vertex u is a facility.
+	 *
+	 * @param u The vertex.
+	 * @return Whether u is a facility.
+	 */
+	public boolean contains(int u) {
+		return (bits[u >>> 6] & 1L << u) != 0;
+	}
+
+	/**
+	 * Returns the number of facilities in a component.
+	 *
+	 * @param c The component number.
+	 * @return The number of facilities.
+	 */
+	public int getCount(int c) {
+		return perComponent[c];
+	}
+
+	/**
+	 * Returns the number of facilities.
+	 *
+	 * @return The number of facilities.
+	 */
+	public int getCount() {
+		return vertices.length;
+	}
+
+	/**
+	 * Returns the facility vertices. The array is not copied.
+	 *
+	 * @return The vertices.
+	 */
+	public int[] getVertices() {
+		return vertices;
+	}
+}
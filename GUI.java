@@ -1,31 +1,48 @@
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics2D;
-import java.awt.MouseInfo;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.Toolkit;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.util.List;
+import java.util.function.BooleanSupplier;
 
 import javax.swing.JFrame;
 import javax.swing.ImageIcon;
+import javax.swing.Timer;
 
 import java.awt.BasicStroke;
 import java.awt.Color;
 
 import javax.swing.JLabel;
+import javax.swing.SwingUtilities;
 
 /**
  * Opens a graphic user interface window containing the
  * map from StreetMap.java as an interactive image format.
  * 
+ * Nothing is drawn on the event dispatch thread except the
+ * path animation. Clicks and finished map tiles ask the render
+ * scheduler for a new frame, which is drawn on its own thread
+ * and swapped in when done. Double clicking zooms in (left)
+ * or out (right) around the pointer.
+ * 
  * @author Kyounghan Min
  */
 @SuppressWarnings("serial")
 public class GUI extends JFrame {
+	private static final int TILE_CACHE = 256; // tiles kept in memory, 256 KB each
+	private static final int ANIMATION_DELAY = 10; // milliseconds per path segment
 	
 	// Essential UI componenets
 	private JLabel mapContainer;
+	private ImageIcon icon;
 	
 	// Map data containers
 	private Graph G;
@@ -44,8 +61,56 @@ public class GUI extends JFrame {
 	private Color roadColor;
 	private int pathWidth;
 	private Color pathColor;
-	private double zoom;
-	private double xF, yF;
+	private volatile View view;
+	private BasicStroke pathStroke, frameStroke, overlayStroke;
+	private Color overlayColor;
+	private volatile boolean[] overlay; // intersections to highlight, or null
+	
+	// Map tiles
+	private RoadIndex index;
+	private TileRenderer renderer;
+	private volatile TileCache tiles;
+	private File tileDirectory;
+	
+	// Frames
+	private RenderScheduler<MapFrame> scheduler;
+	private MapFrame shown; // only touched on the event dispatch thread
+	private volatile boolean anyShown;
+	private volatile int pathSegments; // path segments drawn so far
+	private Timer animation;
+	
+	/**
+	 * What part of the map to draw, and how large.
+	 * Replaced as a whole whenever it changes.
+	 */
+	private static class View {
+		final int width, height;
+		final double zoom, xF, yF;
+		
+		View(int width, int height, double zoom, double xF, double yF) {
+			this.width = width;
+			this.height = height;
+			this.zoom = zoom;
+			this.xF = xF;
+			this.yF = yF;
+		}
+	}
+	
+	/**
+	 * A drawn map image, and where the map is in it.
+	 */
+	private class MapFrame {
+		BufferedImage image;
+		double xS, yS, xO, yO; // pixel = map units * scale + offset
+		
+		int toX(int u) {
+			return (int) (index.getX(u)*xS + xO);
+		}
+		
+		int toY(int u) {
+			return (int) (index.getY(u)*yS + yO);
+		}
+	}
 	
 	/**
 	 * Class constructor; opens a window.
@@ -67,9 +132,11 @@ public class GUI extends JFrame {
 	 */
 	private void initialize(Graph G, List<double[]> V, double[] mapBounds) {
 		mapContainer = new JLabel();
+		icon = new ImageIcon();
 		this.G = G;
 		this.V = V;
 		this.mapBounds = mapBounds;
+		index = new RoadIndex(G, V, mapBounds);
 		
 		Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
 		setBounds(0, 0, screenSize.width, screenSize.height);
@@ -77,8 +144,6 @@ public class GUI extends JFrame {
 		setTitle("Street Map");
 		setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		addImage();
-		setVisible(true);
-		addMouseListener(new MouseInput());
 		
 		title = "Title";
 		titleFont = new Font("Monospace", Font.BOLD, 13);
@@ -89,8 +154,52 @@ public class GUI extends JFrame {
 		roadColor = Color.black;
 		pathWidth = 3;
 		pathColor = Color.red;
-		zoom = 1.0;
-		xF = yF = 0.5;
+		renderer = new TileRenderer(index, mapBounds, roadColor, roadWidth);
+		pathStroke = new BasicStroke(pathWidth);
+		frameStroke = new BasicStroke(1);
+		overlayColor = new Color(0, 160, 80, 150);
+		overlayStroke = new BasicStroke(3, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+		view = new View(0, 0, 1.0, 0.5, 0.5);
+		
+		scheduler = new RenderScheduler<MapFrame>(this::render, F -> SwingUtilities.invokeLater(() -> show(F)));
+		mapContainer.addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				if(e.getClickCount() != 2) return;
+				if(e.getButton() == MouseEvent.BUTTON1) zoom(2.0, e.getX(), e.getY());
+				else if(e.getButton() == MouseEvent.BUTTON3) zoom(0.5, e.getX(), e.getY());
+			}
+		});
+		mapContainer.addComponentListener(new ComponentAdapter() {
+			@Override
+			public void componentResized(ComponentEvent e) {
+				resize();
+				if(tiles != null) scheduler.request();
+			}
+		});
+		setVisible(true);
+	}
+	
+	/**
+	 * Sets the directory map tiles dropped from memory are kept in,
+	 * so that they need not be drawn again. Must be set before the
+	 * map is first updated.
+	 * 
+	 * @param dir The directory.
+	 */
+	public void setTileDirectory(File dir) {
+		tileDirectory = dir;
+	}
+	
+	/**
+	 * Highlights the roads between the given intersections,
+	 * such as the area within reach of a place.
+	 * 
+	 * @param reached Whether each intersection is highlighted, or null for none.
+	 */
+	public void setOverlay(boolean[] reached) {
+		overlay = reached;
+		scheduler.request();
 	}
 	
 	/**
@@ -112,90 +221,180 @@ public class GUI extends JFrame {
 	}
 	
 	/**
-	 * Amplifies the zoom value.
+	 * Amplifies the zoom value, keeping the point under
+	 * the pointer in place.
 	 * 
 	 * @param amplifier The amplifier.
+	 * @param x Horizontal pointer position on the map image.
+	 * @param y Vertical pointer position on the map image.
 	 */
-	public void zoom(double amplifier) {
-		int width = mapContainer.getWidth()-60;
-		int height = mapContainer.getHeight()-60;
-		double nXF = (double)(MouseInfo.getPointerInfo().getLocation().x - (getLocation().x + mapContainer.getLocation().x + 30))/width;
-		double nYF = (double)(MouseInfo.getPointerInfo().getLocation().y - (getLocation().y + mapContainer.getLocation().y + 30))/height;
-		zoom *= amplifier;
-		xF = xF - 1/(zoom*2) + 1/zoom*nXF;
-		yF = yF - 1/(zoom*2) + 1/zoom*nYF;
+	public void zoom(double amplifier, int x, int y) {
+		View v = view;
+		double nXF = (double)(x - 30)/(v.width-60);
+		double nYF = (double)(y - 30)/(v.height-60);
+		double zoom = v.zoom * amplifier;
+		double xF = v.xF - 1/(zoom*2) + 1/zoom*nXF;
+		double yF = v.yF - 1/(zoom*2) + 1/zoom*nYF;
+		view = new View(v.width, v.height, zoom, xF, yF);
+		scheduler.request();
 	}
 	
 	/**
-	 * Updates the map image. Automatically revalidates the
-	 * GUI JFrame.
+	 * Asks for the map image to be updated. The image is
+	 * drawn on the render thread and shown once done, so
+	 * this returns right away.
+	 * 
+	 * The first time, the path is animated one segment at a
+	 * time on top of the map, repainting only that segment.
 	 * 
 	 * @param animate Whether to animate path drawing.
 	 */
-	public void updateMap(boolean animate) {
-		getContentPane().add(mapContainer);
-		revalidate();
+	public synchronized void updateMap(boolean animate) {
+		if(tiles == null) {
+			tiles = new TileCache(renderer, TILE_CACHE, tileDirectory, mapKey(), scheduler::request);
+			pathSegments = P == null || animate ? 0 : P.size()-1;
+		}
+		
+		resize();
+		scheduler.request();
+	}
+	
+	/**
+	 * Hashes the roads, road lengths, coordinates and bounds of
+	 * the map into the key of its tile files, so that maps
+	 * sharing a tile directory never use each other's tiles.
+	 * 
+	 * @return The key.
+	 */
+	private String mapKey() {
+		long h = Landmarks.fingerprint(G);
+		for(double[] v : V) {
+			h = 31*h + Double.doubleToLongBits(v[0]);
+			h = 31*h + Double.doubleToLongBits(v[1]);
+		}
+		for(double b : mapBounds)
+			h = 31*h + Double.doubleToLongBits(b);
+		return Long.toHexString(h);
+	}
+	
+	/**
+	 * Takes the image size from the window.
+	 */
+	private void resize() {
+		View v = view;
+		view = new View(mapContainer.getWidth(), mapContainer.getHeight(), v.zoom, v.xF, v.yF);
+	}
+	
+	/**
+	 * Draws the map image on the render thread.
+	 * 
+	 * The roads are put together from map tiles drawn and
+	 * cached in the background, at the level nearest to the
+	 * zoom. While a tile is not drawn yet, a part of a less
+	 * detailed one is shown scaled up instead, and the map is
+	 * drawn again once it is done. Before anything has been
+	 * shown, the visible tiles are drawn right away instead,
+	 * so the path animation starts over the whole map.
+	 * 
+	 * @param cancelled Tells whether a newer image has been asked for.
+	 * @return The image, or null if given up.
+	 */
+	private MapFrame render(BooleanSupplier cancelled) {
+		View v = view;
+		int width = v.width;
+		int height = v.height;
+		if(width <= 40 || height <= 40) return null;
+		boolean first = !anyShown;
 		
 		// Setting up map
-		int width = mapContainer.getWidth();
-		int height = mapContainer.getHeight();
+		MapFrame F = new MapFrame();
 		BufferedImage I = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		F.image = I;
 		Graphics2D g2d = I.createGraphics();
 		g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 		
 		// Setting up map dimensions
-		double xM = width*zoom, yM = height*zoom;
+		double xM = width*v.zoom, yM = height*v.zoom;
 		double xL = Math.abs(mapBounds[1]-mapBounds[3]), yL = Math.abs(mapBounds[0]-mapBounds[2]);
 		double xI = (xM-(yM-60)*(xL/yL))/2, yI = 30;
 		if(xM/yM < xL/yL) {
 			xI = 30;
 			yI += (yM-(xM-60)*(yL/xL))/2;
 		}
-		double yP = yM*yF-yM/zoom/2, xP = xM*xF-xM/zoom/2;
+		double yP = yM*v.yF-yM/v.zoom/2, xP = xM*v.xF-xM/v.zoom/2;
+		F.xS = xM-xI*2;
+		F.yS = yM-yI*2;
+		F.xO = xI-xP;
+		F.yO = yI-yP;
 		
 		g2d.setColor(Color.white);
 		g2d.fillRect(20, 20, width-40, height-40);
-		g2d.setColor(roadColor);
-		g2d.setStroke(new BasicStroke(roadWidth));
-		
-		// Drawing each road
-		int i, n = G.getSize();
-		double[] v1, v2;
-		for(i = 0; i < n; i++) {
-			for(Edge e : G.getEdges(i)) {				
-				v1 = V.get(i);
-				v2 = V.get(e.next);
-				if(animate)
-					drawRoad(xM, yM, xL, yL, xI, yI, xP, yP, v1[0], v1[1], v2[0], v2[1], 0, g2d);
-				else {
-					drawRoad(xM, yM, xL, yL, xI, yI, xP, yP, v1[0], v1[1], v2[0], v2[1], (int)(v1[2]*v2[2]), g2d);
+		
+		// Drawing the visible tiles of the level at least as detailed as the
+		// image, or parts of less detailed ones while those are not drawn yet
+		int z = 0;
+		while(z < TileRenderer.MAX_LEVEL && renderer.getWidth(z) < F.xS) z++;
+		double t = TileRenderer.TILE * F.xS / renderer.getWidth(z); // tile size in the image
+		int tx0 = Math.max(0, (int) Math.floor(-F.xO/t)), tx1 = Math.min(renderer.getColumns(z)-1, (int) Math.floor((width-F.xO)/t));
+		int ty0 = Math.max(0, (int) Math.floor(-F.yO/t)), ty1 = Math.min(renderer.getRows(z)-1, (int) Math.floor((height-F.yO)/t));
+		g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g2d.clipRect(20, 20, width-40, height-40);
+		int i, n, tx, ty, d, size;
+		BufferedImage T;
+		for(ty = ty0; ty <= ty1; ty++) {
+			for(tx = tx0; tx <= tx1; tx++) {
+				if(cancelled.getAsBoolean()) return null;
+				int x1 = (int) Math.floor(tx*t + F.xO), x2 = (int) Math.floor((tx+1)*t + F.xO);
+				int y1 = (int) Math.floor(ty*t + F.yO), y2 = (int) Math.floor((ty+1)*t + F.yO);
+				T = first ? tiles.load(z, tx, ty) : tiles.get(z, tx, ty);
+				if(T != null) {
+					g2d.drawImage(T, x1, y1, x2-x1, y2-y1, null);
+					continue;
+				}
+				for(d = 1; d <= z; d++) {
+					T = tiles.peek(z-d, tx >> d, ty >> d);
+					if(T == null) continue;
+					size = TileRenderer.TILE >> d;
+					int sx = (tx & ((1 << d) - 1)) * size, sy = (ty & ((1 << d) - 1)) * size;
+					g2d.drawImage(T, x1, y1, x2, y2, sx, sy, sx+size, sy+size, null);
+					break;
 				}
 			}
 		}
 		
-		// Drawing each path
-		if(animate) {
-			n = P.size()-1;
-			for(i = 0; i < n; i++) {
-				
-				v1 = V.get(P.get(i));
-				v2 = V.get(P.get(i+1));
-				
-				drawRoad(xM, yM, xL, yL, xI, yI, xP, yP, v1[0], v1[1], v2[0], v2[1], 1, g2d);
-	
-					try {
-						Thread.sleep(10);
-					} catch (InterruptedException e) {
-						e.printStackTrace();
-					}
-				
-				mapContainer.setIcon(new ImageIcon(I));
-				revalidate();
+		// Highlighting the visible roads with both ends in the overlay
+		boolean[] O = overlay;
+		if(O != null) {
+			g2d.setColor(overlayColor);
+			g2d.setStroke(overlayStroke);
+			int[] roads = index.query((20-F.xO)/F.xS, (20-F.yO)/F.yS, (width-20-F.xO)/F.xS, (height-20-F.yO)/F.yS);
+			for(int r : roads) {
+				if(!O[index.getFrom(r)] || !O[index.getTo(r)]) continue;
+				g2d.drawLine(F.toX(index.getFrom(r)), F.toY(index.getFrom(r)), F.toX(index.getTo(r)), F.toY(index.getTo(r)));
 			}
 		}
+		g2d.setClip(null);
+		
+		// Drawing the path on top, as far as it has been animated
+		if(P != null) {
+			g2d.setColor(pathColor);
+			g2d.setStroke(pathStroke);
+			n = pathSegments;
+			for(i = 0; i < n; i++)
+				g2d.drawLine(F.toX(P.get(i)), F.toY(P.get(i)), F.toX(P.get(i+1)), F.toY(P.get(i+1)));
+		}
 		
 		// Creating image base
-		g2d.setStroke(new BasicStroke(1));
+		drawBase(g2d, width, height);
+		g2d.dispose();
+		return F;
+	}
+	
+	/**
+	 * Draws the gray frame and titles around the map.
+	 */
+	private void drawBase(Graphics2D g2d, int width, int height) {
+		g2d.setStroke(frameStroke);
 		g2d.setColor(Color.lightGray);
 		g2d.fillRect(0, 0, width, 20);
 		g2d.fillRect(0, 0, 20, height);
@@ -208,37 +407,52 @@ public class GUI extends JFrame {
 		int tw = g2d.getFontMetrics().stringWidth(title);
 		g2d.setFont(subtitleFont);
 		g2d.drawString(subtitle, 50+tw, 15);
-		
-		
-		mapContainer.setIcon(new ImageIcon(I));
-		revalidate();
 	}
 	
 	/**
-	 * Draws a road with received parameters.
+	 * Swaps a finished frame in, on the event dispatch thread,
+	 * and starts the path animation after the first one.
 	 */
-	private void drawRoad(double xM, double yM, double xL, double yL, double xI, double yI,
-			double xP, double yP, double lat1, double lon1, double lat2, double lon2, int highlight, Graphics2D g2d) {
-						
-		lat1 = 1-Math.abs(lat1-mapBounds[0])/yL;
-		lon1 = Math.abs(lon1-mapBounds[1])/xL;
-		lat2 = 1-Math.abs(lat2-mapBounds[0])/yL;
-		lon2 = Math.abs(lon2-mapBounds[1])/xL;
+	private void show(MapFrame F) {
+		shown = F;
+		anyShown = true;
+		icon.setImage(F.image);
+		mapContainer.setIcon(icon);
+		mapContainer.repaint();
 		
-		int x1 = (int) (lon1*(xM-xI*2) + xI-xP);
-		int y1 = (int) (lat1*(yM-yI*2) + yI-yP);
-		int x2 = (int) (lon2*(xM-xI*2) + xI-xP);
-		int y2 = (int) (lat2*(yM-yI*2) + yI-yP);
-		
-		if(highlight == 1) {
-			g2d.setColor(pathColor);
-			g2d.setStroke(new BasicStroke(pathWidth));
-		} else {
-			g2d.setColor(roadColor);
-			g2d.setStroke(new BasicStroke(roadWidth));
+		if(P != null && animation == null && pathSegments < P.size()-1) {
+			animation = new Timer(ANIMATION_DELAY, e -> animate());
+			animation.start();
+		}
+	}
+	
+	/**
+	 * Draws the next path segment onto the frame being shown
+	 * and repaints only the part of the window it covers.
+	 */
+	private void animate() {
+		int i = pathSegments;
+		if(i >= P.size()-1) {
+			animation.stop();
+			return;
 		}
 		
+		MapFrame F = shown;
+		int x1 = F.toX(P.get(i)), y1 = F.toY(P.get(i)), x2 = F.toX(P.get(i+1)), y2 = F.toY(P.get(i+1));
+		Graphics2D g2d = F.image.createGraphics();
+		g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g2d.clipRect(20, 20, F.image.getWidth()-40, F.image.getHeight()-40);
+		g2d.setColor(pathColor);
+		g2d.setStroke(pathStroke);
 		g2d.drawLine(x1, y1, x2, y2);
+		g2d.dispose();
+		pathSegments = i+1;
+		
+		// The image is centered in the label
+		Rectangle r = new Rectangle(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x2-x1), Math.abs(y2-y1));
+		r.grow(pathWidth, pathWidth);
+		r.translate((mapContainer.getWidth()-F.image.getWidth())/2, (mapContainer.getHeight()-F.image.getHeight())/2);
+		mapContainer.repaint(r);
 	}
 	
 	/**
@@ -248,5 +462,5 @@ public class GUI extends JFrame {
 		getContentPane().add(mapContainer);
 	}
 	
-	
+
 }
@@ -1,4 +1,4 @@
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -18,114 +18,180 @@ class Edge {
 
 /**
  * <p>
- * Implementation of an adjacency list graph with 
- * limited functions only to fulfill the task
+ * Implementation of a compressed sparse row (CSR) graph
+ * with limited functions only to fulfill the task
  * of Djikstra pathfinding algorithm. The edges
  * are undirected.
  * </p>
  * 
  * <p>
- * Note that the integer keys for vertices must be
- * of consecutive nonnegative integers, starting
- * at 0.
+ * The edges of vertex u are stored at indices
+ * offsets[u] (inclusive) to offsets[u+1] (exclusive)
+ * of the targets and weights arrays, so walking
+ * the edges of a vertex is a loop over two primitive
+ * arrays. Every undirected edge is stored once
+ * in each direction. The structure is built once
+ * and never changes afterwards.
  * </p>
  * 
  * <p>
- * The mark on each vertices are set as 0 by default.
+ * Road lengths may still change, through withWeights,
+ * which returns a new graph sharing the vertices and
+ * edges of this one. Searches already running on the
+ * old graph finish on the old lengths.
+ * </p>
+ * 
+ * <p>
+ * Note that the integer keys for vertices must be
+ * of consecutive nonnegative integers, starting
+ * at 0.
  * </p>
  * 
  * @author Kyounghan (Kevin) Min
  */
 public class Graph {
-	private List<Edge>[] graphList;
-	private double[] mark;
+	private int[] offsets;
+	private int[] targets;
+	private double[] weights;
 	private int n;
 	
 	/**
-	 * Initializes adjacency list graph array.
+	 * Builds the graph from an undirected edge list, where
+	 * edge i connects from[i] and to[i] with weight weight[i].
 	 * 
 	 * @param n Number of indices.
+	 * @param from First vertex of each edge.
+	 * @param to Second vertex of each edge.
+	 * @param weight Weight of each edge.
+	 * @param m Number of edges.
 	 */
-	@SuppressWarnings("unchecked")
-	Graph(int n) {
+	Graph(int n, int[] from, int[] to, double[] weight, int m) {
 		this.n = n;
-		graphList = new LinkedList[n];
-		mark = new double[n];
-		for(int i = 0; i < n; i++) {
-			graphList[i] = new LinkedList<Edge>();
-			mark[i] = 0;
+		offsets = new int[n+1];
+		targets = new int[2*m];
+		weights = new double[2*m];
+		int i;
+		
+		// Counting the degree of each vertex
+		for(i = 0; i < m; i++) {
+			offsets[from[i]+1]++;
+			offsets[to[i]+1]++;
+		}
+		for(i = 0; i < n; i++)
+			offsets[i+1] += offsets[i];
+		
+		// Filling each vertex's slice in edge list order
+		int[] fill = new int[n];
+		System.arraycopy(offsets, 0, fill, 0, n);
+		for(i = 0; i < m; i++) {
+			targets[fill[from[i]]] = to[i];
+			weights[fill[from[i]]++] = weight[i];
+			targets[fill[to[i]]] = from[i];
+			weights[fill[to[i]]++] = weight[i];
 		}
 	}
 	
 	/**
-	 * Adds an undirected edge connecting u and v.
+	 * Wraps arrays that are already in compressed sparse
+	 * row form, such as those read from a map snapshot.
 	 * 
-	 * @param u First vertex.
-	 * @param v Second vertex.
-	 * @param weight Weight of edge.
+	 * @param offsets First edge index of each vertex, plus the edge count.
+	 * @param targets Target vertex of each edge.
+	 * @param weights Weight of each edge.
 	 */
-	public void addEdge(int u, int v, double weight) {
-		graphList[u].add(new Edge(v, weight));
-		graphList[v].add(new Edge(u, weight));
+	Graph(int[] offsets, int[] targets, double[] weights) {
+		this.n = offsets.length - 1;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.weights = weights;
 	}
 	
 	/**
-	 * Returns all edges of vertex u.
+	 * Returns a graph with the same vertices and edges
+	 * as this one but different weights. Edge e of the
+	 * new graph is edge e of this one.
+	 * 
+	 * @param weights Weight of each edge, not copied.
+	 * @return The new graph.
+	 */
+	public Graph withWeights(double[] weights) {
+		if(weights.length != targets.length)
+			throw new IllegalArgumentException("Expected " + targets.length + " weights, got " + weights.length + ".");
+		return new Graph(offsets, targets, weights);
+	}
+	
+	/**
+	 * Returns a copy of the weight of every edge.
+	 * 
+	 * @return The weights.
+	 */
+	public double[] copyWeights() {
+		return weights.clone();
+	}
+	
+	/**
+	 * Returns all edges of vertex u as a newly
+	 * allocated list. Prefer edgeStart, edgeEnd,
+	 * getTarget and getWeight in loops.
 	 * 
 	 * @param u The vertex.
 	 * @return The edges.
 	 */
 	public List<Edge> getEdges(int u) {
-		return graphList[u];
+		List<Edge> edges = new ArrayList<Edge>(getDegree(u));
+		for(int e = offsets[u]; e < offsets[u+1]; e++)
+			edges.add(new Edge(targets[e], weights[e]));
+		return edges;
 	}
 	
 	/**
-	 * Returns the smallest weight edge of vertex u
-	 * that leads to an unmarked vertex (marked as 0).
+	 * Returns the index of the first edge of vertex u.
 	 * 
-	 * @return The smallest weight edge to an
-	 * unmarked vertex.
+	 * @param u The vertex.
+	 * @return The first edge index.
 	 */
-	public Edge getMinEdge(int u) {
-		Edge min = new Edge(-1, Integer.MAX_VALUE);
-		boolean minFound = false;
-		for(Edge e : graphList[u])
-			if(mark[e.next] == 0.0 && min.weight > e.weight) {
-				min = e;
-				minFound = true;
-			}
-		
-		if(minFound) return min;
-		else return null;
+	public int edgeStart(int u) {
+		return offsets[u];
 	}
 	
 	/**
-	 * Sets a mark on vertex u.
+	 * Returns the index one past the last edge of vertex u.
 	 * 
 	 * @param u The vertex.
-	 * @param m The mark.
+	 * @return The end edge index.
 	 */
-	public void setMark(int u, double m) {
-		mark[u] = m;
+	public int edgeEnd(int u) {
+		return offsets[u+1];
 	}
 	
 	/**
-	 * Reveals the mark on vertex u.
+	 * Returns the vertex that edge e leads to.
 	 * 
-	 * @param u The vertex.
-	 * @return The mark of vertex u.
+	 * @param e The edge index.
+	 * @return The target vertex.
 	 */
-	public double getMark(int u) {
-		return mark[u];
+	public int getTarget(int e) {
+		return targets[e];
 	}
 	
 	/**
-	 * Clears marks on all vertices,
-	 * setting them to 0.
+	 * Returns the weight of edge e.
+	 * 
+	 * @param e The edge index.
+	 * @return The weight.
 	 */
-	public void clearMarks() {
-		for(int i = 0; i < n; i++)
-			mark[i] = 0;
+	public double getWeight(int e) {
+		return weights[e];
+	}
+	
+	/**
+	 * Returns the number of edges of vertex u.
+	 * 
+	 * @param u The vertex.
+	 * @return The degree of u.
+	 */
+	public int getDegree(int u) {
+		return offsets[u+1] - offsets[u];
 	}
 	
 	/**
@@ -137,11 +203,14 @@ public class Graph {
 		return n;
 	}
 	
-	public boolean hasUnvisited() {
-		for (int i = 0; i < n; i++)
-			if (mark[i] == -1)
-				return true;
-		return false;
+	/**
+	 * Returns the number of directed edges in the graph,
+	 * which is twice the number of roads.
+	 * 
+	 * @return The number of directed edges.
+	 */
+	public int getEdgeCount() {
+		return targets.length;
 	}
 	
 	
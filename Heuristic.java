@@ -0,0 +1,18 @@
+/**
+ * A lower bound on the road distance between two
+ * vertices, used to guide A* search.
+ * 
+ * @author Kyounghan (Kevin) Min
+ */
+public interface Heuristic {
+	
+	/**
+	 * Estimates the shortest path length from vertex u to
+	 * vertex v without ever overestimating it.
+	 * 
+	 * @param u The vertex.
+	 * @param v The ending vertex.
+	 * @return The estimate.
+	 */
+	double estimate(int u, int v);
+}
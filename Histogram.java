@@ -0,0 +1,134 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Counts how often values of each size were recorded, so
+ * that percentiles can be read off at any time, without
+ * keeping the values themselves.
+ * </p>
+ *
+ * <p>
+ * Values below 32 each have a bucket of their own. Above
+ * that, every power of two is split into 32 equal buckets,
+ * so a percentile is never off by more than about 3%, and
+ * any long fits into fewer than 2,000 buckets.
+ * </p>
+ *
+ * <p>
+ * Recording is lock-free and may be done from any number of
+ * threads at once. A percentile read while values are being
+ * recorded reflects some but maybe not all of them.
+ * </p>
+ *
+ * @author Kyounghan (Kevin) Min
+ */
+public class Histogram {
+	private static final int SUB = 5; // bits of precision within a power of two
+	private static final int BUCKETS = (64 - SUB) << SUB;
+
+	private AtomicLongArray counts;
+	private LongAdder count, sum;
+	private LongAccumulator max;
+
+	/**
+	 * Creates an empty histogram.
+	 */
+	Histogram() {
+		counts = new AtomicLongArray(BUCKETS);
+		count = new LongAdder();
+		sum = new LongAdder();
+		max = new LongAccumulator(Math::max, 0);
+	}
+
+	private static int bucket(long value) {
+		if(value < 1 << SUB) return (int) value;
+		int e = 63 - Long.numberOfLeadingZeros(value);
+		return (e - SUB + 1) << SUB | (int) (value >>> (e - SUB)) & ((1 << SUB) - 1);
+	}
+
+	// Largest value that falls into bucket i
+	private static long highest(int i) {
+		int group = i >>> SUB;
+		if(group == 0) return i;
+		long low = (long) ((1 << SUB) | i & ((1 << SUB) - 1)) << (group - 1);
+		return low + (1L << (group - 1)) - 1;
+	}
+
+	/**
+	 * Records a value. Negative values count as 0.
+	 *
+	 * @param value The value.
+	 */
+	public void record(long value) {
+		if(value < 0) value = 0;
+		counts.incrementAndGet(bucket(value));
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	/**
+	 * Returns the number of values recorded.
+	 *
+	 * @return The number of values.
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Returns the mean of the values recorded.
+	 *
+	 * @return The mean, or 0 if there are none.
+	 */
+	public double getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : sum.sum() / (double) n;
+	}
+
+	/**
+	 * Returns the largest value recorded.
+	 *
+	 * @return The largest value, or 0 if there are none.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Returns the value that the given fraction of the
+	 * recorded values are no larger than, rounded up to
+	 * the top of its bucket.
+	 *
+	 * @param p The fraction, such as 0.5 for the median or 0.99.
+	 * @return The value, or 0 if there are none.
+	 */
+	public long getPercentile(double p) {
+		long[] c = new long[BUCKETS];
+		long n = 0;
+		for(int i = 0; i < BUCKETS; i++)
+			n += c[i] = counts.get(i);
+		if(n == 0) return 0;
+
+		long rank = Math.max(1, (long) Math.ceil(p * n)), seen = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			seen += c[i];
+			if(seen >= rank) return Math.min(highest(i), getMax());
+		}
+		return getMax();
+	}
+
+	/**
+	 * Forgets every value recorded. Values recorded during
+	 * the reset may or may not be forgotten.
+	 */
+	public void reset() {
+		for(int i = 0; i < BUCKETS; i++)
+			counts.set(i, 0);
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+}
@@ -0,0 +1,185 @@
+/**
+ * <p>
+ * Indexed binary min-heap over the integer vertex keys
+ * of a Graph. Each vertex may be in the heap at most once,
+ * and its priority can be lowered in place (decrease-key),
+ * which is what Dijkstra's algorithm needs.
+ * </p>
+ *
+ * <p>
+ * Vertex keys must be of consecutive nonnegative integers,
+ * starting at 0 and below the capacity given on creation.
+ * </p>
+ *
+ * @author Kyounghan (Kevin) Min
+ */
+public class IndexedHeap {
+	private int[] heap; // heap position -> vertex
+	private int[] pos; // vertex -> heap position, -1 if absent
+	private double[] key; // vertex -> priority
+	private int size;
+	private int operations; // pushes, updates and pops since the last clear
+
+	/**
+	 * Initializes an empty heap.
+	 *
+	 * @param n Number of indices.
+	 */
+	IndexedHeap(int n) {
+		heap = new int[n];
+		pos = new int[n];
+		key = new double[n];
+		for(int i = 0; i < n; i++)
+			pos[i] = -1;
+		size = 0;
+	}
+
+	/**
+	 * Inserts vertex u with priority k, or lowers the priority
+	 * of u to k if u is already in the heap with a larger one.
+	 *
+	 * @param u The vertex.
+	 * @param k The priority.
+	 */
+	public void push(int u, double k) {
+		int i = pos[u];
+		if(i == -1) {
+			i = size++;
+			heap[i] = u;
+			pos[u] = i;
+		} else if(k >= key[u]) return;
+
+		operations++;
+		key[u] = k;
+		siftUp(i);
+	}
+
+	/**
+	 * Sets the priority of vertex u to k, whether it is
+	 * larger or smaller than before, inserting u if it is
+	 * not in the heap.
+	 *
+	 * @param u The vertex.
+	 * @param k The priority.
+	 */
+	public void update(int u, double k) {
+		if(pos[u] == -1 || k <= key[u]) {
+			push(u, k);
+			return;
+		}
+
+		operations++;
+		key[u] = k;
+		siftDown(pos[u]);
+	}
+
+	/**
+	 * Removes and returns the vertex with the smallest priority.
+	 *
+	 * @return The vertex.
+	 */
+	public int pop() {
+		int min = heap[0];
+		operations++;
+		pos[min] = -1;
+		size--;
+		if(size > 0) {
+			int last = heap[size];
+			heap[0] = last;
+			pos[last] = 0;
+			siftDown(0);
+		}
+		return min;
+	}
+
+	/**
+	 * Returns the smallest priority in the heap.
+	 *
+	 * @return The smallest priority.
+	 */
+	public double peekKey() {
+		return key[heap[0]];
+	}
+
+	/**
+	 * Reveals whether vertex u is currently in the heap.
+	 *
+	 * @param u The vertex.
+	 * @return Whether u is in the heap.
+	 */
+	public boolean contains(int u) {
+		return pos[u] != -1;
+	}
+
+	/**
+	 * Reveals whether the heap is empty.
+	 *
+	 * @return Whether the heap is empty.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the number of vertices in the heap.
+	 *
+	 * @return The number of vertices.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Removes all vertices from the heap. Only touches
+	 * the vertices that are still in it.
+	 */
+	public void clear() {
+		for(int i = 0; i < size; i++)
+			pos[heap[i]] = -1;
+		size = 0;
+		operations = 0;
+	}
+
+	/**
+	 * Returns the number of pushes, priority changes and
+	 * pops since the heap was last cleared.
+	 *
+	 * @return The number of operations.
+	 */
+	public int getOperationCount() {
+		return operations;
+	}
+
+	private void siftUp(int i) {
+		int u = heap[i];
+		double k = key[u];
+		while(i > 0) {
+			int p = (i - 1) >>> 1;
+			int w = heap[p];
+			if(key[w] <= k) break;
+			heap[i] = w;
+			pos[w] = i;
+			i = p;
+		}
+		heap[i] = u;
+		pos[u] = i;
+	}
+
+	private void siftDown(int i) {
+		int u = heap[i];
+		double k = key[u];
+		int half = size >>> 1;
+		while(i < half) {
+			int c = 2*i + 1;
+			int r = c + 1;
+			if(r < size && key[heap[r]] < key[heap[c]]) c = r;
+			int w = heap[c];
+			if(k <= key[w]) break;
+			heap[i] = w;
+			pos[w] = i;
+			i = c;
+		}
+		heap[i] = u;
+		pos[u] = i;
+	}
+}
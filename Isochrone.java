@@ -0,0 +1,108 @@
+/**
+ * <p>
+ * The intersections within a distance of one or more
+ * starting intersections, with how far each one is from
+ * the nearest start, nearest first.
+ * </p>
+ *
+ * <p>
+ * The intersections and distances are kept in two plain
+ * arrays, so that even an area of millions of intersections
+ * takes no more memory than twelve bytes for each.
+ * </p>
+ *
+ * @author Kyounghan (Kevin) Min
+ */
+public class Isochrone {
+	private int[] vertices;
+	private double[] distances;
+	private int count;
+	private double limit;
+
+	/**
+	 * Creates an isochrone from found intersections.
+	 *
+	 * @param vertices  The intersections, nearest first.
+	 * @param distances The distance of each one in kilometers.
+	 * @param count     Number of intersections in the arrays.
+	 * @param limit     The distance searched up to, in kilometers.
+	 */
+	Isochrone(int[] vertices, double[] distances, int count, double limit) {
+		this.vertices = vertices;
+		this.distances = distances;
+		this.count = count;
+		this.limit = limit;
+	}
+
+	/**
+	 * Returns the number of intersections within the distance.
+	 *
+	 * @return The number of intersections.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the i-th nearest intersection.
+	 *
+	 * @param i The index, from 0.
+	 * @return The vertex.
+	 */
+	public int getVertex(int i) {
+		return vertices[i];
+	}
+
+	/**
+	 * Returns the distance of the i-th nearest intersection.
+	 *
+	 * @param i The index, from 0.
+	 * @return The distance in kilometers.
+	 */
+	public double getDistance(int i) {
+		return distances[i];
+	}
+
+	/**
+	 * Returns the intersections, nearest first. The array is
+	 * not copied, and may be longer than the count.
+	 *
+	 * @return The vertices.
+	 */
+	public int[] getVertices() {
+		return vertices;
+	}
+
+	/**
+	 * Returns the distance of each intersection, in the same
+	 * order. The array is not copied, and may be longer than
+	 * the count.
+	 *
+	 * @return The distances in kilometers.
+	 */
+	public double[] getDistances() {
+		return distances;
+	}
+
+	/**
+	 * Returns the distance searched up to.
+	 *
+	 * @return The distance in kilometers.
+	 */
+	public double getLimit() {
+		return limit;
+	}
+
+	/**
+	 * Marks the intersections within the distance.
+	 *
+	 * @param n Number of vertices in the graph.
+	 * @return Whether each vertex is within the distance.
+	 */
+	public boolean[] toMask(int n) {
+		boolean[] mask = new boolean[n];
+		for(int i = 0; i < count; i++)
+			mask[vertices[i]] = true;
+		return mask;
+	}
+}
@@ -0,0 +1,304 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>
+ * Finds the k shortest loopless routes between two
+ * intersections, shortest first, with Yen's algorithm.
+ * </p>
+ *
+ * <p>
+ * Yen's algorithm finds each next route by taking every
+ * intersection of the last one found as a spur, keeping
+ * the route up to it, and searching from it to the end
+ * without the roads that would repeat a route already found
+ * or loop back. The best of all such candidates is the next
+ * route. A plain version runs one full search per spur.
+ * </p>
+ *
+ * <p>
+ * Here a single search from the end first finds the road
+ * distance to the end from every intersection nearby, and
+ * that tree is reused by every spur:
+ * </p>
+ *
+ * <ul>
+ * <li>If the tree's own route from the spur to the end avoids
+ * everything taken out, it is the best spur route, and no
+ * search is needed at all.</li>
+ * <li>Otherwise the spur search is A* guided by the tree
+ * distances, which taking roads out can only make longer, so
+ * they never overestimate and lead the search almost straight
+ * to the end.</li>
+ * <li>Only as many candidates are kept as routes are still
+ * missing. A spur whose route so far plus its distance to the
+ * end is already longer than the worst of those cannot give
+ * a better one and is skipped, and a spur search gives up as
+ * soon as everything it has left is that long.</li>
+ * </ul>
+ *
+ * <p>
+ * Intersections beyond the tree are taken to be at least as
+ * far from the end as the farthest one in it, which is a
+ * lower bound as well, so the tree need only reach a little
+ * past the start.
+ * </p>
+ *
+ * @author Kyounghan (Kevin) Min
+ */
+public class KShortestPaths {
+	private static final double TREE_SLACK = 0.5; // tree reaches this much farther than the start
+
+	private Graph G;
+	private SearchSpace T, S;
+	private SearchSpace banned; // vertices taken out for the current spur are marked settled
+	private double radius; // distance to the end of every vertex outside the tree is at least this
+	private int settled;
+
+	/**
+	 * Creates a k shortest paths finder.
+	 *
+	 * @param G The graph.
+	 * @param T Search space for the tree towards the end.
+	 * @param S Search space for the spur searches.
+	 * @param banned Search space only used to mark the vertices
+	 * taken out for each spur, so that unmarking them all is a reset.
+	 */
+	KShortestPaths(Graph G, SearchSpace T, SearchSpace S, SearchSpace banned) {
+		this.G = G;
+		this.T = T;
+		this.S = S;
+		this.banned = banned;
+	}
+
+	// Lower bound of the distance from u to the end
+	private double bound(int u) {
+		return T.isSettled(u) ? T.getDist(u) : radius;
+	}
+
+	/**
+	 * Finds the k shortest loopless routes from u to v.
+	 *
+	 * @param u Starting vertex.
+	 * @param v Ending vertex.
+	 * @param k Number of routes.
+	 * @return The routes, shortest first, fewer than k if
+	 * there are no more, or none if u and v are not connected.
+	 */
+	public Route[] find(int u, int v, int k) {
+		if(k <= 0) return new Route[0];
+		settled = 0;
+		if(!grow(v, u)) return new Route[0];
+
+		List<int[]> A = new ArrayList<int[]>(); // routes found
+		List<double[]> prefixes = new ArrayList<double[]>(); // distance along each found route
+		List<int[]> B = new ArrayList<int[]>(); // best candidates, shortest first
+		List<Double> costs = new ArrayList<Double>();
+		Set<PathKey> seen = new HashSet<PathKey>();
+
+		int[] first = treePath(u, v);
+		A.add(first);
+		prefixes.add(prefix(first));
+		seen.add(new PathKey(first));
+
+		while(A.size() < k) {
+			int need = k - A.size();
+			int[] last = A.get(A.size() - 1);
+			double[] lastPrefix = prefixes.get(prefixes.size() - 1);
+
+			for(int i = 0; i < last.length - 1; i++) {
+				int spur = last[i];
+				double rootCost = lastPrefix[i];
+				double threshold = B.size() >= need ? costs.get(need - 1) : Double.POSITIVE_INFINITY;
+				if(rootCost + bound(spur) > threshold) continue;
+
+				// Taking out the route so far, and the next road of every found route sharing it
+				banned.reset();
+				for(int j = 0; j < i; j++)
+					banned.settle(last[j]);
+				int[] next = new int[A.size()];
+				int nexts = 0;
+				for(int[] P : A)
+					if(P.length > i + 1 && startsWith(P, last, i + 1)) next[nexts++] = P[i + 1];
+
+				int[] spurPath = spurTreePath(spur, v, next, nexts);
+				double spurCost;
+				if(spurPath != null) {
+					spurCost = bound(spur);
+				} else {
+					spurCost = spurSearch(spur, v, next, nexts, threshold - rootCost);
+					if(spurCost == Double.POSITIVE_INFINITY) continue;
+					spurPath = Route.fromTree(S, v).getPath();
+				}
+
+				int[] path = new int[i + spurPath.length];
+				System.arraycopy(last, 0, path, 0, i);
+				System.arraycopy(spurPath, 0, path, i, spurPath.length);
+				PathKey key = new PathKey(path);
+				if(seen.contains(key)) continue;
+
+				// Keeping the candidate if it is among the best still needed
+				double cost = rootCost + spurCost;
+				int at = B.size();
+				while(at > 0 && costs.get(at - 1) > cost)
+					at--;
+				if(at >= need) continue;
+				B.add(at, path);
+				costs.add(at, cost);
+				seen.add(key);
+				if(B.size() > need) {
+					B.remove(need);
+					costs.remove(need);
+				}
+			}
+
+			if(B.isEmpty()) break;
+			int[] best = B.remove(0);
+			costs.remove(0);
+			A.add(best);
+			prefixes.add(prefix(best));
+		}
+
+		Route[] R = new Route[A.size()];
+		for(int i = 0; i < R.length; i++)
+			R[i] = Route.fromPath(G, A.get(i), settled);
+		return R;
+	}
+
+	/**
+	 * Grows the tree of distances to the end until the start
+	 * is settled, and then a little farther.
+	 *
+	 * @return Whether the start was reached.
+	 */
+	private boolean grow(int end, int start) {
+		IndexedHeap H = T.getHeap();
+		int j, e, w;
+		double d, limit = Double.POSITIVE_INFINITY;
+
+		T.reach(end, 0, -1);
+		while(!H.isEmpty() && H.peekKey() <= limit) {
+			j = H.pop();
+			T.settle(j);
+			if(j == start) limit = T.getDist(j) * (1 + TREE_SLACK);
+
+			for(e = G.edgeStart(j); e < G.edgeEnd(j); e++) {
+				w = G.getTarget(e);
+				if(T.isSettled(w)) continue;
+				d = T.getDist(j) + G.getWeight(e);
+				if(d < T.getDist(w)) T.reach(w, d, j);
+			}
+		}
+		settled += T.getSettledCount();
+		radius = H.isEmpty() ? Double.POSITIVE_INFINITY : H.peekKey();
+		return T.isSettled(start);
+	}
+
+	// The tree's route from u to the end, parent pointers leading towards it
+	private int[] treePath(int u, int end) {
+		int k = 0;
+		for(int j = u; j != -1; j = T.getParent(j))
+			k++;
+		int[] path = new int[k];
+		k = 0;
+		for(int j = u; j != -1; j = T.getParent(j))
+			path[k++] = j;
+		return path;
+	}
+
+	/**
+	 * Returns the tree's route from the spur to the end if it
+	 * avoids every vertex and first road taken out, or null.
+	 */
+	private int[] spurTreePath(int spur, int end, int[] next, int nexts) {
+		if(!T.isSettled(spur)) return null;
+		int step = T.getParent(spur);
+		for(int i = 0; i < nexts; i++)
+			if(next[i] == step) return null;
+		for(int j = step; j != -1; j = T.getParent(j))
+			if(banned.isSettled(j)) return null;
+		return treePath(spur, end);
+	}
+
+	/**
+	 * Runs A* from the spur to the end without the vertices and
+	 * first roads taken out, giving up once nothing shorter
+	 * than the limit is left.
+	 *
+	 * @return The distance from the spur to the end, or infinity.
+	 */
+	private double spurSearch(int spur, int end, int[] next, int nexts, double limit) {
+		S.reset();
+		IndexedHeap H = S.getHeap();
+		int j, e, w, i;
+		double d, h;
+
+		S.reach(spur, 0, -1, bound(spur));
+		while(!H.isEmpty() && H.peekKey() <= limit) {
+			j = H.pop();
+			S.settle(j);
+			if(j == end) break;
+
+			for(e = G.edgeStart(j); e < G.edgeEnd(j); e++) {
+				w = G.getTarget(e);
+				if(banned.isSettled(w) || S.isSettled(w)) continue;
+				if(j == spur) {
+					for(i = 0; i < nexts && next[i] != w; i++);
+					if(i < nexts) continue;
+				}
+				h = bound(w);
+				if(h == Double.POSITIVE_INFINITY) continue;
+				d = S.getDist(j) + G.getWeight(e);
+				if(d < S.getDist(w)) S.reach(w, d, j, d + h);
+			}
+		}
+		settled += S.getSettledCount();
+		return S.isSettled(end) ? S.getDist(end) : Double.POSITIVE_INFINITY;
+	}
+
+	// Distance from the start to each vertex of a path
+	private double[] prefix(int[] path) {
+		double[] p = new double[path.length];
+		double w;
+		for(int i = 0; i < path.length - 1; i++) {
+			w = Double.POSITIVE_INFINITY;
+			for(int e = G.edgeStart(path[i]); e < G.edgeEnd(path[i]); e++)
+				if(G.getTarget(e) == path[i+1] && G.getWeight(e) < w)
+					w = G.getWeight(e);
+			p[i+1] = p[i] + w;
+		}
+		return p;
+	}
+
+	private static boolean startsWith(int[] P, int[] root, int length) {
+		for(int i = 0; i < length; i++)
+			if(P[i] != root[i]) return false;
+		return true;
+	}
+
+	/**
+	 * A path usable as a hash set key.
+	 */
+	private static class PathKey {
+		final int[] path;
+		final int hash;
+
+		PathKey(int[] path) {
+			this.path = path;
+			hash = Arrays.hashCode(path);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof PathKey && Arrays.equals(path, ((PathKey) o).path);
+		}
+	}
+}
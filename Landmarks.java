@@ -0,0 +1,251 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.stream.IntStream;
+
+/**
+ * <p>
+ * A* heuristic from landmarks and the triangle inequality (ALT).
+ * </p>
+ * 
+ * <p>
+ * A few vertices near the edges of the map are picked as
+ * landmarks, and the road distance from every landmark to
+ * every vertex is stored. For any landmark L, the triangle
+ * inequality gives |d(L,u) - d(L,v)| as a lower bound on the
+ * road distance between u and v. Unlike the great-circle
+ * distance, it knows about rivers, rail lines and other
+ * obstacles that roads have to go around.
+ * </p>
+ * 
+ * <p>
+ * Roads are undirected, so distances from and to a landmark
+ * are the same and one table per landmark is enough. The
+ * tables are floats, stored vertex by vertex so that all
+ * landmarks of a vertex share a cache line.
+ * </p>
+ * 
+ * @author Kyounghan (Kevin) Min
+ */
+public class Landmarks implements Heuristic {
+	private static final int MAGIC = 0x4C4D4B32; // "LMK2"
+	
+	// Float ulps taken off an estimate, since each table entry is rounded to the nearest float
+	private static final int SLACK = 2;
+	
+	private int n, k;
+	private int[] landmarks;
+	private float[] dist; // dist[u*k + l] is the distance of u from landmark l
+	private long fingerprint; // of the graph the tables were computed for
+	private long buildTime;
+	
+	/**
+	 * Creates landmarks from precomputed distance tables.
+	 * 
+	 * @param landmarks The landmark vertices.
+	 * @param dist Distances, indexed by vertex times landmark count plus landmark.
+	 * @param n Number of vertices.
+	 * @param fingerprint Fingerprint of the graph, as given by fingerprint().
+	 */
+	Landmarks(int[] landmarks, float[] dist, int n, long fingerprint) {
+		this.landmarks = landmarks;
+		this.dist = dist;
+		this.n = n;
+		this.fingerprint = fingerprint;
+		k = landmarks.length;
+	}
+	
+	/**
+	 * Hashes the size, roads and road lengths of a graph, so
+	 * that saved tables are not used with a different map, or
+	 * the same map with roads added, removed or changed.
+	 * 
+	 * @param G The graph.
+	 * @return The fingerprint.
+	 */
+	static long fingerprint(Graph G) {
+		int n = G.getSize(), e;
+		long h = 31L * n + G.getEdgeCount();
+		for(int u = 0; u < n; u++) {
+			h = 31*h + G.edgeStart(u);
+			for(e = G.edgeStart(u); e < G.edgeEnd(u); e++) {
+				h = 31*h + G.getTarget(e);
+				h = 31*h + Double.doubleToLongBits(G.getWeight(e));
+			}
+		}
+		return h;
+	}
+	
+	/**
+	 * Picks k landmarks and computes their distance tables,
+	 * one landmark per thread of the common fork-join pool.
+	 * 
+	 * Landmarks are picked by great-circle distance: the first
+	 * is the vertex farthest from vertex 0, and each next one
+	 * is the vertex farthest from all landmarks picked so far.
+	 * Vertices without roads are never picked.
+	 * 
+	 * @param G The graph.
+	 * @param lat Latitude of each vertex.
+	 * @param lon Longitude of each vertex.
+	 * @param k Number of landmarks.
+	 * @return The landmarks.
+	 */
+	static Landmarks compute(Graph G, double[] lat, double[] lon, int k) {
+		long start = System.nanoTime();
+		int n = G.getSize(), i, j;
+		k = Math.min(k, n);
+		
+		// Farthest-point selection
+		int[] landmarks = new int[k];
+		double[] near = new double[n]; // distance to the nearest landmark so far
+		int from = 0;
+		for(i = 0; i < n; i++)
+			near[i] = Double.POSITIVE_INFINITY;
+		for(j = 0; j < k; j++) {
+			int far = -1;
+			double d, max = -1;
+			for(i = 0; i < n; i++) {
+				d = Utility.haversine(lat[from], lon[from], lat[i], lon[i]);
+				if(j > 0 && d < near[i]) near[i] = d;
+				d = j > 0 ? near[i] : d;
+				if(d > max && G.getDegree(i) > 0) {
+					max = d;
+					far = i;
+				}
+			}
+			if(far == -1) {
+				k = j;
+				break;
+			}
+			landmarks[j] = from = far;
+			near[far] = 0;
+		}
+		if(k < landmarks.length) {
+			int[] fewer = new int[k];
+			System.arraycopy(landmarks, 0, fewer, 0, k);
+			landmarks = fewer;
+		}
+		
+		// One full Dijkstra per landmark, in parallel
+		final int K = k;
+		final int[] L = landmarks;
+		final float[] dist = new float[n * K];
+		IntStream.range(0, K).parallel().forEach(l -> {
+			SearchSpace S = new SearchSpace(n);
+			S.reset();
+			Utility.DijkstraAll(G, S, L[l]);
+			for(int u = 0; u < n; u++)
+				dist[u*K + l] = (float) S.getDist(u);
+		});
+		
+		Landmarks A = new Landmarks(landmarks, dist, n, fingerprint(G));
+		A.buildTime = System.nanoTime() - start;
+		return A;
+	}
+	
+	/**
+	 * Estimates the road distance between u and v as the
+	 * largest lower bound any landmark gives.
+	 * 
+	 * @param u The vertex.
+	 * @param v The ending vertex.
+	 * @return The estimate.
+	 */
+	public double estimate(int u, int v) {
+		int a = u*k, b = v*k;
+		float du, dv, far = 0;
+		double d, max = 0;
+		for(int l = 0; l < k; l++) {
+			du = dist[a + l];
+			dv = dist[b + l];
+			if(du == Float.POSITIVE_INFINITY || dv == Float.POSITIVE_INFINITY) continue;
+			if(du > dv) {
+				d = du - dv;
+				if(du > far) far = du;
+			} else {
+				d = dv - du;
+				if(dv > far) far = dv;
+			}
+			if(d > max) max = d;
+		}
+		// Rounding errors grow with the distances, not their difference
+		return Math.max(0, max - SLACK*Math.ulp(far));
+	}
+	
+	/**
+	 * Writes the landmarks and their distance tables to a file.
+	 * 
+	 * @param path The file path.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void save(String path) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(n);
+			out.writeLong(fingerprint);
+			out.writeInt(k);
+			for(int l : landmarks)
+				out.writeInt(l);
+			for(float d : dist)
+				out.writeFloat(d);
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * Reads landmarks saved by save().
+	 * 
+	 * @param path The file path.
+	 * @param G The graph the landmarks were computed for.
+	 * @return The landmarks.
+	 * @throws IOException If the file cannot be read or does not belong to G.
+	 */
+	static Landmarks load(String path, Graph G) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)));
+		try {
+			if(in.readInt() != MAGIC)
+				throw new IOException(path + " is not a landmark file.");
+			int n = in.readInt();
+			long fingerprint = in.readLong();
+			if(n != G.getSize() || fingerprint != fingerprint(G))
+				throw new IOException(path + " was computed for a different map.");
+			int k = in.readInt();
+			
+			int[] landmarks = new int[k];
+			for(int l = 0; l < k; l++)
+				landmarks[l] = in.readInt();
+			float[] dist = new float[n * k];
+			for(int i = 0; i < dist.length; i++)
+				dist[i] = in.readFloat();
+			return new Landmarks(landmarks, dist, n, fingerprint);
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Returns the number of landmarks.
+	 * 
+	 * @return The number of landmarks.
+	 */
+	public int getCount() {
+		return k;
+	}
+	
+	/**
+	 * Returns how long picking the landmarks and computing
+	 * their tables took, or 0 if they were loaded from a file.
+	 * 
+	 * @return The time in milliseconds.
+	 */
+	public double getBuildMillis() {
+		return buildTime / 1e6;
+	}
+}
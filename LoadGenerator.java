@@ -0,0 +1,94 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Sends route requests from a pairs file to a running
+ * {@code --serve} server, keeping a set number of them in
+ * flight at once, and reports how many it answered per
+ * second and how long they took.
+ * </p>
+ *
+ * <p>
+ * Requests are sent without waiting for each other through
+ * one HTTP client, so a single process can keep thousands of
+ * requests open against the server, on the same machine or
+ * another one.
+ * </p>
+ *
+ * @author Kyounghan (Kevin) Min
+ */
+public class LoadGenerator {
+
+	/**
+	 * Runs the load generator from the command line:
+	 * {@code <base_url> <pairs_file_path> [requests] [concurrency]}
+	 *
+	 * @param args The arguments.
+	 * @throws IOException If the pairs file could not be read.
+	 * @throws InterruptedException If interrupted while waiting for answers.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if(args.length < 2) {
+			System.out.println("Usage: LoadGenerator <base_url> <pairs_file_path> [requests] [concurrency]");
+			System.out.println("   e.g. LoadGenerator http://localhost:8080 pairs.txt 100000 1000");
+			return;
+		}
+		String base = args[0].endsWith("/") ? args[0].substring(0, args[0].length() - 1) : args[0];
+		List<URI> uris = new ArrayList<URI>();
+		for(String line : Files.readAllLines(Paths.get(args[1]))) {
+			line = line.trim();
+			if(line.isEmpty()) continue;
+			String[] pair = line.split(line.indexOf('\t') >= 0 ? "\t+" : " +");
+			if(pair.length != 2) continue;
+			uris.add(URI.create(base + "/route?from=" + URLEncoder.encode(pair[0], StandardCharsets.UTF_8)
+					+ "&to=" + URLEncoder.encode(pair[1], StandardCharsets.UTF_8)));
+		}
+		if(uris.isEmpty()) {
+			System.out.println("The pairs file has no pairs.");
+			return;
+		}
+		int requests = args.length > 2 ? Integer.parseInt(args[2]) : uris.size();
+		int concurrency = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+
+		HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		Semaphore inFlight = new Semaphore(concurrency);
+		Histogram latency = new Histogram();
+		LongAdder ok = new LongAdder(), notFound = new LongAdder(), failed = new LongAdder();
+
+		long elapsed = System.nanoTime();
+		for(int i = 0; i < requests; i++) {
+			inFlight.acquire();
+			long start = System.nanoTime();
+			HttpRequest request = HttpRequest.newBuilder(uris.get(i % uris.size())).GET().build();
+			client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+				latency.record(System.nanoTime() - start);
+				if(error != null) failed.increment();
+				else if(response.statusCode() == 200) ok.increment();
+				else if(response.statusCode() == 404) notFound.increment();
+				else failed.increment();
+				inFlight.release();
+			});
+		}
+		inFlight.acquire(concurrency);
+		elapsed = System.nanoTime() - elapsed;
+
+		System.out.println("Sent " + requests + " requests, " + concurrency + " at a time, in " + elapsed / 1e6
+				+ " ms (" + requests / (elapsed / 1e9) + " requests/s).");
+		System.out.println("Answered " + ok.sum() + ", not found or not connected " + notFound.sum()
+				+ ", failed " + failed.sum() + ".");
+		System.out.println("Latency p50 " + latency.getPercentile(0.5) / 1e6 + " ms, p99 "
+				+ latency.getPercentile(0.99) / 1e6 + " ms, max " + latency.getMax() / 1e6 + " ms.");
+	}
+}
@@ -0,0 +1,385 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Fast loader for map data text files, working directly
+ * on the bytes of the file.
+ * </p>
+ *
+ * <p>
+ * The file is cut into chunks at line breaks, and the chunks
+ * are read into byte arrays with positional reads and parsed
+ * on all cores in two passes. The first pass reads
+ * the intersections of every chunk and remembers where each
+ * road's endpoint names are. The intersections are then
+ * numbered in file order and their names go into a hash table
+ * keyed by raw bytes. The second pass looks the road endpoints
+ * up in that table and measures each road. Numbers are parsed
+ * straight from the bytes, and no String is ever made for a
+ * road line, so loading allocates little besides the results.
+ * </p>
+ *
+ * <p>
+ * Unlike reading line by line, roads may come before the
+ * intersections they connect.
+ * </p>
+ *
+ * @author Kyounghan (Kevin) Min
+ */
+public class MapParser {
+	private static final int CHUNK = 8 << 20; // bytes per chunk
+
+	private static final double[] POW10 = new double[23];
+	static {
+		POW10[0] = 1;
+		for(int i = 1; i < POW10.length; i++)
+			POW10[i] = POW10[i-1] * 10;
+	}
+
+	/**
+	 * One piece of the file, and what was read from it.
+	 */
+	private static class Chunk {
+		long start;
+		byte[] buf;
+
+		// Intersections: name position and length in buf, coordinates
+		int vCount;
+		int[] vName = new int[64];
+		double[] vLat = new double[32], vLon = new double[32];
+
+		// Roads: position and length of both endpoint names in buf
+		int rCount;
+		int[] rName = new int[64];
+
+		// Resolved roads
+		int[] from, to;
+		double[] weight;
+	}
+
+	private byte[] names; // all intersection names, back to back
+	private int[] nameOffsets;
+	private int[] table; // open addressing hash table of vertex + 1, 0 if empty
+
+	private double[] lat, lon;
+
+	/**
+	 * Reads and takes data from the data file, writing the key dictionary D and
+	 * vertex dimension list V like StreetMap.getData. A map graph of the data is
+	 * also generated and returned.
+	 *
+	 * @param path      The path to input text file.
+	 * @param D         Key dictionary.
+	 * @param RevD      Reversed key dictionary.
+	 * @param V         Vertex dimension list.
+	 * @param mapBounds Coordinate maxima and minima of map.
+	 * @return A graph representation of the map data.
+	 * @throws IOException If the file cannot be read or is malformed.
+	 */
+	public static Graph parse(String path, Map<String, Integer> D, Map<Integer, String> RevD,
+			List<double[]> V, double[] mapBounds) throws IOException {
+		return new MapParser().load(path, D, RevD, V, mapBounds);
+	}
+
+	private Graph load(String path, Map<String, Integer> D, Map<Integer, String> RevD,
+			List<double[]> V, double[] mapBounds) throws IOException {
+		List<Chunk> chunks = split(path);
+		int i, j, n = 0, m = 0;
+
+		// Pass 1: intersections, and where the road endpoints are
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			chunks.parallelStream().forEach(c -> scan(channel, c));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			file.close();
+		}
+
+		// Numbering intersections in file order
+		int b = 0;
+		for(Chunk c : chunks) {
+			n += c.vCount;
+			m += c.rCount;
+			for(j = 0; j < c.vCount; j++)
+				b += c.vName[2*j+1];
+		}
+		names = new byte[b];
+		nameOffsets = new int[n+1];
+		lat = new double[n];
+		lon = new double[n];
+		table = new int[Integer.highestOneBit(Math.max(n, 1)) * 4];
+
+		double minLat = Double.POSITIVE_INFINITY, minLon = Double.POSITIVE_INFINITY;
+		double maxLat = Double.NEGATIVE_INFINITY, maxLon = Double.NEGATIVE_INFINITY;
+		i = b = 0;
+		for(Chunk c : chunks) {
+			for(j = 0; j < c.vCount; j++, i++) {
+				System.arraycopy(c.buf, c.vName[2*j], names, b, c.vName[2*j+1]);
+				nameOffsets[i] = b;
+				b += c.vName[2*j+1];
+				nameOffsets[i+1] = b;
+				insert(i);
+
+				lat[i] = c.vLat[j];
+				lon[i] = c.vLon[j];
+				minLat = Math.min(minLat, lat[i]);
+				minLon = Math.min(minLon, lon[i]);
+				maxLat = Math.max(maxLat, lat[i]);
+				maxLon = Math.max(maxLon, lon[i]);
+			}
+			c.vName = null;
+			c.vLat = c.vLon = null;
+		}
+
+		// Pass 2: roads
+		try {
+			chunks.parallelStream().forEach(this::resolve);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(path + ": " + e.getMessage());
+		}
+
+		// Filling the dictionaries and vertex list
+		String key;
+		for(i = 0; i < n; i++) {
+			key = new String(names, nameOffsets[i], nameOffsets[i+1] - nameOffsets[i], StandardCharsets.UTF_8);
+			D.put(key, i);
+			RevD.put(i, key);
+			V.add(new double[] { lat[i], lon[i], 0 });
+		}
+
+		mapBounds[0] = minLat;
+		mapBounds[1] = minLon;
+		mapBounds[2] = maxLat;
+		mapBounds[3] = maxLon;
+
+		// Using edge list to create graph
+		int[] from = new int[m], to = new int[m];
+		double[] weight = new double[m];
+		m = 0;
+		for(Chunk c : chunks) {
+			System.arraycopy(c.from, 0, from, m, c.rCount);
+			System.arraycopy(c.to, 0, to, m, c.rCount);
+			System.arraycopy(c.weight, 0, weight, m, c.rCount);
+			m += c.rCount;
+		}
+		return new Graph(n, from, to, weight, m);
+	}
+
+	/**
+	 * Cuts the file into chunks that end at line breaks.
+	 */
+	private static List<Chunk> split(String path) throws IOException {
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			long size = channel.size(), start = 0, end;
+			while(start < size) {
+				end = Math.min(start + CHUNK, size);
+
+				// Extending the chunk to the end of its last line
+				file.seek(end - 1);
+				while(end < size && file.read() != '\n')
+					end++;
+
+				Chunk c = new Chunk();
+				c.start = start;
+				c.buf = new byte[(int) (end - start)];
+				chunks.add(c);
+				start = end;
+			}
+		} finally {
+			file.close();
+		}
+		return chunks;
+	}
+
+	/**
+	 * Pass 1 over one chunk.
+	 */
+	private static void scan(FileChannel channel, Chunk c) {
+		byte[] buf = c.buf;
+		int p = 0, len = buf.length, end, t1, t2, t3;
+
+		// Reading the chunk
+		ByteBuffer dst = ByteBuffer.wrap(buf);
+		try {
+			while(dst.hasRemaining())
+				if(channel.read(dst, c.start + dst.position()) < 0) break;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		while(p < len) {
+
+			// Finding the line and its first three tabs
+			end = p;
+			while(end < len && buf[end] != '\n')
+				end++;
+			int next = end + 1;
+			if(end > p && buf[end-1] == '\r') end--;
+			t1 = tab(buf, p, end);
+			t2 = tab(buf, t1 + 1, end);
+			t3 = tab(buf, t2 + 1, end);
+
+			if(end > p && buf[p] == 'i') {
+				if(c.vCount == c.vLat.length) {
+					c.vName = Arrays.copyOf(c.vName, 4*c.vCount);
+					c.vLat = Arrays.copyOf(c.vLat, 2*c.vCount);
+					c.vLon = Arrays.copyOf(c.vLon, 2*c.vCount);
+				}
+				c.vName[2*c.vCount] = t1 + 1;
+				c.vName[2*c.vCount+1] = t2 - t1 - 1;
+				c.vLat[c.vCount] = parseDouble(buf, t2 + 1, t3);
+				c.vLon[c.vCount++] = parseDouble(buf, t3 + 1, end);
+
+			} else if(end > p && buf[p] == 'r') {
+				if(4*c.rCount == c.rName.length)
+					c.rName = Arrays.copyOf(c.rName, 8*c.rCount);
+				c.rName[4*c.rCount] = t2 + 1;
+				c.rName[4*c.rCount+1] = t3 - t2 - 1;
+				c.rName[4*c.rCount+2] = t3 + 1;
+				c.rName[4*c.rCount+3] = end - t3 - 1;
+				c.rCount++;
+			}
+
+			p = next;
+		}
+	}
+
+	/**
+	 * Pass 2 over one chunk.
+	 */
+	private void resolve(Chunk c) {
+		c.from = new int[c.rCount];
+		c.to = new int[c.rCount];
+		c.weight = new double[c.rCount];
+		int u, v;
+		for(int j = 0; j < c.rCount; j++) {
+			u = find(c.buf, c.rName[4*j], c.rName[4*j+1]);
+			v = find(c.buf, c.rName[4*j+2], c.rName[4*j+3]);
+			c.from[j] = u;
+			c.to[j] = v;
+			c.weight[j] = Utility.haversine(lat[u], lon[u], lat[v], lon[v]);
+		}
+		c.rName = null;
+		c.buf = null;
+	}
+
+	/**
+	 * Returns the position of the next tab at or after p,
+	 * or end if there is none.
+	 */
+	private static int tab(byte[] buf, int p, int end) {
+		while(p < end && buf[p] != '\t')
+			p++;
+		return p;
+	}
+
+	/**
+	 * Parses a decimal number in [p, end). Plain decimals with up to
+	 * 15 significant digits are turned into a double with a single
+	 * correctly rounded division, which gives exactly what
+	 * Double.parseDouble would. Anything else falls back to it.
+	 */
+	static double parseDouble(byte[] buf, int p, int end) {
+		int i = p, digits = 0, scale = 0;
+		long m = 0;
+		boolean negative = false, point = false;
+		byte ch;
+
+		if(i < end && (buf[i] == '-' || buf[i] == '+')) negative = buf[i++] == '-';
+		for(; i < end; i++) {
+			ch = buf[i];
+			if(ch >= '0' && ch <= '9') {
+				if(m == 0 && ch == '0') {
+					if(point) scale++;
+					continue;
+				}
+				if(++digits > 15) break;
+				m = m * 10 + (ch - '0');
+				if(point) scale++;
+			} else if(ch == '.' && !point) {
+				point = true;
+			} else break;
+		}
+
+		if(i < end || digits == 0 && i == p || scale >= POW10.length) {
+			return Double.parseDouble(new String(buf, p, end - p, StandardCharsets.US_ASCII));
+		}
+
+		double d = m / POW10[scale];
+		return negative ? -d : d;
+	}
+
+	/**
+	 * Adds vertex i to the name table.
+	 */
+	private void insert(int i) {
+		int mask = table.length - 1;
+		int a = nameOffsets[i], len = nameOffsets[i+1] - a;
+		int h = hash(names, a, len) & mask;
+		while(table[h] != 0) {
+			int k = table[h] - 1;
+			if(nameOffsets[k+1] - nameOffsets[k] == len
+					&& Arrays.equals(names, nameOffsets[k], nameOffsets[k+1], names, a, a + len)) {
+				table[h] = i + 1; // a later intersection with the same name replaces it
+				return;
+			}
+			h = (h + 1) & mask;
+		}
+		table[h] = i + 1;
+	}
+
+	/**
+	 * Looks up the vertex whose name is the bytes [p, p+len) of buf.
+	 */
+	private int find(byte[] buf, int p, int len) {
+		int mask = table.length - 1, k, a, j;
+		int h = 0;
+		for(j = 0; j < len; j++)
+			h = 31 * h + buf[p + j];
+		h = mix(h) & mask;
+
+		probe:
+		while(table[h] != 0) {
+			k = table[h] - 1;
+			a = nameOffsets[k];
+			if(nameOffsets[k+1] - a == len) {
+				for(j = 0; j < len; j++)
+					if(names[a + j] != buf[p + j]) {
+						h = (h + 1) & mask;
+						continue probe;
+					}
+				return k;
+			}
+			h = (h + 1) & mask;
+		}
+
+		throw new IllegalArgumentException("road to unknown intersection "
+				+ new String(buf, p, len, StandardCharsets.UTF_8));
+	}
+
+	private static int hash(byte[] b, int p, int len) {
+		int h = 0;
+		for(int j = 0; j < len; j++)
+			h = 31 * h + b[p + j];
+		return mix(h);
+	}
+
+	private static int mix(int h) {
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
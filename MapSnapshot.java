@@ -0,0 +1,204 @@
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Reads and writes compiled map snapshots: a binary image of
+ * everything StreetMap.getData builds from a map text file,
+ * so that later runs can skip parsing altogether.
+ * </p>
+ * 
+ * <p>
+ * A snapshot is read by memory-mapping the file and copying
+ * each section into its array in bulk. The layout is, in
+ * little-endian order:
+ * </p>
+ * 
+ * <pre>
+ * int      magic "SMAP", version, n (vertices), a (directed edges),
+ *          b (bytes of names), 3 reserved ints
+ * double   minLat, minLon, maxLat, maxLon
+ * double   lat[n], lon[n], weights[a]
+ * int      offsets[n+1], targets[a], nameOffsets[n+1]
+ * byte     names[b] (UTF-8, back to back)
+ * </pre>
+ * 
+ * <p>
+ * Doubles come first so that every section stays aligned
+ * to its own size. A snapshot is mapped as one buffer, so it
+ * can be at most 2 GB.
+ * </p>
+ * 
+ * @author Kyounghan (Kevin) Min
+ */
+public class MapSnapshot {
+	private static final int MAGIC = 0x50414D53; // "SMAP" read little-endian
+	private static final int VERSION = 1;
+	private static final int HEADER = 8 * 4 + 4 * 8;
+	
+	// Length in bytes of a snapshot with the given counts
+	private static long size(int n, int a, int b) {
+		return HEADER + 8L * (2L * n + a) + 4L * (2L * (n + 1) + a) + b;
+	}
+	
+	/**
+	 * Reveals whether the file at the given path is a map snapshot.
+	 * 
+	 * @param path The file path.
+	 * @return Whether it starts with the snapshot magic number.
+	 * @throws IOException If the file cannot be read.
+	 */
+	public static boolean isSnapshot(String path) throws IOException {
+		DataInputStream in = new DataInputStream(new FileInputStream(path));
+		try {
+			return Integer.reverseBytes(in.readInt()) == MAGIC;
+		} catch (IOException e) {
+			return false;
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Writes a snapshot of a loaded map.
+	 * 
+	 * @param path      The snapshot file path.
+	 * @param G         The map graph.
+	 * @param RevD      Reversed key dictionary.
+	 * @param V         Vertex dimension list.
+	 * @param mapBounds Coordinate maxima and minima of map.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public static void write(String path, Graph G, Map<Integer, String> RevD, List<double[]> V,
+			double[] mapBounds) throws IOException {
+		int n = G.getSize(), a = G.getEdgeCount(), i, e;
+		
+		byte[][] names = new byte[n][];
+		int b = 0;
+		for(i = 0; i < n; i++) {
+			names[i] = RevD.get(i).getBytes(StandardCharsets.UTF_8);
+			b += names[i].length;
+		}
+		long size = size(n, a, b);
+		if(size > Integer.MAX_VALUE)
+			throw new IOException("The map is too large for a snapshot (" + size + " bytes, at most 2 GB).");
+		
+		RandomAccessFile file = new RandomAccessFile(path, "rw");
+		try {
+			file.setLength(size);
+			MappedByteBuffer buf = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buf.order(ByteOrder.LITTLE_ENDIAN);
+			
+			buf.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(a).putInt(b).putInt(0).putInt(0).putInt(0);
+			for(i = 0; i < 4; i++)
+				buf.putDouble(mapBounds[i]);
+			for(i = 0; i < n; i++)
+				buf.putDouble(V.get(i)[0]);
+			for(i = 0; i < n; i++)
+				buf.putDouble(V.get(i)[1]);
+			for(e = 0; e < a; e++)
+				buf.putDouble(G.getWeight(e));
+			for(i = 0; i <= n; i++)
+				buf.putInt(i < n ? G.edgeStart(i) : a);
+			for(e = 0; e < a; e++)
+				buf.putInt(G.getTarget(e));
+			for(i = 0, b = 0; i <= n; i++) {
+				buf.putInt(b);
+				if(i < n) b += names[i].length;
+			}
+			for(i = 0; i < n; i++)
+				buf.put(names[i]);
+			buf.force();
+		} finally {
+			file.close();
+		}
+	}
+	
+	/**
+	 * Reads a snapshot, writing the key dictionary D and vertex
+	 * dimension list V like StreetMap.getData does.
+	 * 
+	 * @param path      The snapshot file path.
+	 * @param D         Key dictionary.
+	 * @param RevD      Reversed key dictionary.
+	 * @param V         Vertex dimension list.
+	 * @param mapBounds Coordinate maxima and minima of map.
+	 * @return The map graph.
+	 * @throws IOException If the file cannot be read, is not a snapshot,
+	 * or is truncated or corrupt.
+	 */
+	public static Graph read(String path, Map<String, Integer> D, Map<Integer, String> RevD,
+			List<double[]> V, double[] mapBounds) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			long length = file.length();
+			if(length > Integer.MAX_VALUE)
+				throw new IOException(path + " is too large for a map snapshot (" + length + " bytes, at most 2 GB).");
+			if(length < HEADER)
+				throw new IOException(path + " is truncated: it is shorter than a snapshot header.");
+			MappedByteBuffer buf = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+			buf.order(ByteOrder.LITTLE_ENDIAN);
+			
+			if(buf.getInt() != MAGIC)
+				throw new IOException(path + " is not a map snapshot.");
+			if(buf.getInt() != VERSION)
+				throw new IOException(path + " was written by a different version.");
+			int n = buf.getInt(), a = buf.getInt(), b = buf.getInt(), i;
+			if(n < 0 || a < 0 || b < 0 || size(n, a, b) != length)
+				throw new IOException(path + " is truncated or corrupt: its header does not match its length.");
+			buf.position(HEADER - 4 * 8);
+			
+			for(i = 0; i < 4; i++)
+				mapBounds[i] = buf.getDouble();
+			double[] lat = new double[n], lon = new double[n], weights = new double[a];
+			int[] offsets = new int[n + 1], targets = new int[a], nameOffsets = new int[n + 1];
+			
+			buf.asDoubleBuffer().get(lat);
+			buf.position(buf.position() + 8 * n);
+			buf.asDoubleBuffer().get(lon);
+			buf.position(buf.position() + 8 * n);
+			buf.asDoubleBuffer().get(weights);
+			buf.position(buf.position() + 8 * a);
+			buf.asIntBuffer().get(offsets);
+			buf.position(buf.position() + 4 * (n + 1));
+			buf.asIntBuffer().get(targets);
+			buf.position(buf.position() + 4 * a);
+			buf.asIntBuffer().get(nameOffsets);
+			buf.position(buf.position() + 4 * (n + 1));
+			
+			// Checking every index before it is used
+			boolean valid = offsets[0] == 0 && offsets[n] == a && nameOffsets[0] == 0 && nameOffsets[n] == b;
+			for(i = 0; i < n && valid; i++)
+				valid = offsets[i] <= offsets[i + 1] && nameOffsets[i] <= nameOffsets[i + 1];
+			for(i = 0; i < a && valid; i++)
+				valid = targets[i] >= 0 && targets[i] < n;
+			if(!valid)
+				throw new IOException(path + " is corrupt: its roads or names do not add up.");
+			
+			byte[] names = new byte[b];
+			buf.get(names);
+			String key;
+			for(i = 0; i < n; i++) {
+				key = new String(names, nameOffsets[i], nameOffsets[i + 1] - nameOffsets[i], StandardCharsets.UTF_8);
+				D.put(key, i);
+				RevD.put(i, key);
+				V.add(new double[] { lat[i], lon[i], 0 });
+			}
+			
+			return new Graph(offsets, targets, weights);
+		} finally {
+			file.close();
+		}
+	}
+	
+	private MapSnapshot() {
+	}
+}
@@ -0,0 +1,223 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * <p>
+ * Collects what every search of a router cost: how long it
+ * took, how many vertices it settled, how many edges it
+ * relaxed, how many heap operations it did and how many
+ * vertices the route found has.
+ * </p>
+ *
+ * <p>
+ * Each of these goes into a lock-free histogram, so any
+ * number of queries may be recorded at once and the
+ * percentiles may be read at any time. They may be read
+ * through JMX once registered, or printed every few seconds
+ * as text or JSON. A router without metrics records nothing,
+ * and does not even read the clock.
+ * </p>
+ *
+ * @author Kyounghan (Kevin) Min
+ */
+public class Metrics implements MetricsMBean {
+	public static final String OBJECT_NAME = "DijkstraMapPathfinder:type=Metrics";
+
+	private Histogram nanos, settled, relaxed, heapOperations, pathLength;
+	private LongAdder notConnected;
+	private ScheduledExecutorService dumper;
+
+	/**
+	 * Creates empty metrics.
+	 */
+	Metrics() {
+		nanos = new Histogram();
+		settled = new Histogram();
+		relaxed = new Histogram();
+		heapOperations = new Histogram();
+		pathLength = new Histogram();
+		notConnected = new LongAdder();
+	}
+
+	/**
+	 * Records one search.
+	 *
+	 * @param time The search time in nanoseconds.
+	 * @param S    The search space the search used.
+	 * @param B    The backward search space, or null.
+	 * @param R    The route found, or null if there was none.
+	 */
+	void record(long time, SearchSpace S, SearchSpace B, Route R) {
+		long s = S.getSettledCount(), r = S.getRelaxedCount(), h = S.getHeap().getOperationCount();
+		if(B != null) {
+			s += B.getSettledCount();
+			r += B.getRelaxedCount();
+			h += B.getHeap().getOperationCount();
+		}
+		nanos.record(time);
+		settled.record(s);
+		relaxed.record(r);
+		heapOperations.record(h);
+		if(R == null) notConnected.increment();
+		else pathLength.record(R.getPath().length);
+	}
+
+	/**
+	 * Registers these metrics with the platform MBean server,
+	 * under {@link #OBJECT_NAME}.
+	 *
+	 * @return Whether registering worked.
+	 */
+	public boolean register() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if(server.isRegistered(name)) server.unregisterMBean(name);
+			server.registerMBean(this, name);
+			return true;
+		} catch (JMException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * Starts printing the metrics every given number of
+	 * seconds on a background thread, replacing any
+	 * printing started before.
+	 *
+	 * @param seconds How often to print.
+	 * @param json    Whether to print JSON instead of text.
+	 * @param out     Where to print.
+	 */
+	public synchronized void startDump(long seconds, boolean json, PrintStream out) {
+		stopDump();
+		dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "metrics");
+			t.setDaemon(true);
+			return t;
+		});
+		dumper.scheduleAtFixedRate(() -> out.println(json ? getJson() : toString()), seconds, seconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Stops printing the metrics.
+	 */
+	public synchronized void stopDump() {
+		if(dumper != null) dumper.shutdownNow();
+		dumper = null;
+	}
+
+	private static String format(double d) {
+		return String.format(Locale.ROOT, "%.3f", d);
+	}
+
+	private static String text(String name, Histogram H, double scale) {
+		return name + " mean " + format(H.getMean() / scale) + ", p50 " + format(H.getPercentile(0.5) / scale)
+				+ ", p95 " + format(H.getPercentile(0.95) / scale) + ", p99 " + format(H.getPercentile(0.99) / scale)
+				+ ", max " + format(H.getMax() / scale);
+	}
+
+	private static String json(String name, Histogram H, double scale) {
+		return "\"" + name + "\":{\"mean\":" + format(H.getMean() / scale) + ",\"p50\":"
+				+ format(H.getPercentile(0.5) / scale) + ",\"p95\":" + format(H.getPercentile(0.95) / scale)
+				+ ",\"p99\":" + format(H.getPercentile(0.99) / scale) + ",\"max\":" + format(H.getMax() / scale) + "}";
+	}
+
+	/**
+	 * Returns the metrics as lines of text.
+	 *
+	 * @return The metrics.
+	 */
+	@Override
+	public String toString() {
+		return "Queries " + getQueryCount() + ", not connected " + getNotConnectedCount() + "\n"
+				+ text("  Time (ms):       ", nanos, 1e6) + "\n"
+				+ text("  Settled:         ", settled, 1) + "\n"
+				+ text("  Relaxed:         ", relaxed, 1) + "\n"
+				+ text("  Heap operations: ", heapOperations, 1) + "\n"
+				+ text("  Path length:     ", pathLength, 1);
+	}
+
+	@Override
+	public String getJson() {
+		return "{\"queries\":" + getQueryCount() + ",\"notConnected\":" + getNotConnectedCount() + ","
+				+ json("millis", nanos, 1e6) + "," + json("settled", settled, 1) + ","
+				+ json("relaxed", relaxed, 1) + "," + json("heapOperations", heapOperations, 1) + ","
+				+ json("pathLength", pathLength, 1) + "}";
+	}
+
+	@Override
+	public long getQueryCount() {
+		return nanos.getCount();
+	}
+
+	@Override
+	public long getNotConnectedCount() {
+		return notConnected.sum();
+	}
+
+	@Override
+	public double getP50Millis() {
+		return nanos.getPercentile(0.5) / 1e6;
+	}
+
+	@Override
+	public double getP95Millis() {
+		return nanos.getPercentile(0.95) / 1e6;
+	}
+
+	@Override
+	public double getP99Millis() {
+		return nanos.getPercentile(0.99) / 1e6;
+	}
+
+	@Override
+	public double getMaxMillis() {
+		return nanos.getMax() / 1e6;
+	}
+
+	@Override
+	public double getMeanSettled() {
+		return settled.getMean();
+	}
+
+	@Override
+	public long getP99Settled() {
+		return settled.getPercentile(0.99);
+	}
+
+	@Override
+	public double getMeanRelaxed() {
+		return relaxed.getMean();
+	}
+
+	@Override
+	public double getMeanHeapOperations() {
+		return heapOperations.getMean();
+	}
+
+	@Override
+	public double getMeanPathLength() {
+		return pathLength.getMean();
+	}
+
+	@Override
+	public void reset() {
+		nanos.reset();
+		settled.reset();
+		relaxed.reset();
+		heapOperations.reset();
+		pathLength.reset();
+		notConnected.reset();
+	}
+}
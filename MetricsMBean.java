@@ -0,0 +1,73 @@
+/**
+ * The attributes and operations of the routing metrics
+ * seen through JMX, such as in JConsole or VisualVM.
+ *
+ * @author Kyounghan (Kevin) Min
+ */
+public interface MetricsMBean {
+
+	/**
+	 * @return The number of searches recorded.
+	 */
+	long getQueryCount();
+
+	/**
+	 * @return The number of searches that found no route.
+	 */
+	long getNotConnectedCount();
+
+	/**
+	 * @return The median search time in milliseconds.
+	 */
+	double getP50Millis();
+
+	/**
+	 * @return The 95th percentile search time in milliseconds.
+	 */
+	double getP95Millis();
+
+	/**
+	 * @return The 99th percentile search time in milliseconds.
+	 */
+	double getP99Millis();
+
+	/**
+	 * @return The longest search time in milliseconds.
+	 */
+	double getMaxMillis();
+
+	/**
+	 * @return The mean number of vertices settled per search.
+	 */
+	double getMeanSettled();
+
+	/**
+	 * @return The 99th percentile of vertices settled per search.
+	 */
+	long getP99Settled();
+
+	/**
+	 * @return The mean number of edges relaxed per search.
+	 */
+	double getMeanRelaxed();
+
+	/**
+	 * @return The mean number of heap operations per search.
+	 */
+	double getMeanHeapOperations();
+
+	/**
+	 * @return The mean number of vertices on the routes found.
+	 */
+	double getMeanPathLength();
+
+	/**
+	 * @return All of the metrics as a JSON object.
+	 */
+	String getJson();
+
+	/**
+	 * Forgets everything recorded so far.
+	 */
+	void reset();
+}
@@ -0,0 +1,118 @@
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * Draws frames on one background thread whenever asked,
+ * and hands each finished frame over to be shown.
+ * </p>
+ *
+ * <p>
+ * Asking for a frame never waits. Any number of requests
+ * made while a frame is being drawn are answered by a single
+ * frame drawn after it, so a burst of input costs at most
+ * one frame more. A frame being drawn learns that it has been
+ * overtaken by a newer request through the cancel check it is
+ * given, may stop early, and is never shown if it was.
+ * </p>
+ *
+ * @param <F> The type of frame.
+ *
+ * @author Kyounghan (Kevin) Min
+ */
+public class RenderScheduler<F> {
+
+	/**
+	 * Draws one frame.
+	 *
+	 * @param <F> The type of frame.
+	 */
+	public interface Job<F> {
+
+		/**
+		 * Draws a frame.
+		 *
+		 * @param cancelled Tells whether a newer frame has been asked for.
+		 * @return The frame, or null if drawing was given up.
+		 */
+		F render(BooleanSupplier cancelled);
+	}
+
+	private Job<F> job;
+	private Consumer<F> show;
+	private Thread thread;
+	private volatile long requested; // number of the latest request
+	private long started; // request number of the frame being drawn
+	private volatile long rendered, dropped;
+
+	/**
+	 * Creates a scheduler and starts its thread.
+	 *
+	 * @param job  Draws a frame.
+	 * @param show Shows a finished frame, called on the scheduler thread.
+	 */
+	RenderScheduler(Job<F> job, Consumer<F> show) {
+		this.job = job;
+		this.show = show;
+		thread = new Thread(this::run, "render");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Asks for a new frame.
+	 */
+	public synchronized void request() {
+		requested++;
+		notify();
+	}
+
+	private void run() {
+		try {
+			while(true) {
+				long r;
+				synchronized(this) {
+					while(requested == started)
+						wait();
+					r = started = requested;
+				}
+
+				F frame = job.render(() -> requested != r);
+				if(frame == null || requested != r) {
+					dropped++;
+					continue;
+				}
+				show.accept(frame);
+				rendered++;
+			}
+		} catch (InterruptedException e) {
+			// Shutting down
+		}
+	}
+
+	/**
+	 * Returns the number of frames drawn and shown.
+	 *
+	 * @return The number of frames.
+	 */
+	public long getRenderedCount() {
+		return rendered;
+	}
+
+	/**
+	 * Returns the number of frames given up or thrown
+	 * away because a newer one was asked for.
+	 *
+	 * @return The number of frames.
+	 */
+	public long getDroppedCount() {
+		return dropped;
+	}
+
+	/**
+	 * Stops the scheduler thread.
+	 */
+	public void shutdown() {
+		thread.interrupt();
+	}
+}
@@ -0,0 +1,195 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * Grid of the roads of a map, for finding the ones
+ * that cross a rectangle such as the visible part
+ * of the map window.
+ * </p>
+ *
+ * <p>
+ * Positions are in map units: x runs from 0 at the west
+ * edge of the map to 1 at the east edge, and y from 0 at
+ * the north edge to 1 at the south edge, like the pixels
+ * of an image. The map is cut into about one grid cell per
+ * two roads, and each road is listed in every cell its
+ * bounding box overlaps, cell by cell in one flat array.
+ * A road is listed once however many ways it is stored in
+ * the graph.
+ * </p>
+ *
+ * <p>
+ * A query reports a road only from the first cell in which
+ * it meets the rectangle, so nothing is reported twice and
+ * queries need no scratch state and may run on any number
+ * of threads at once.
+ * </p>
+ *
+ * @author Kyounghan (Kevin) Min
+ */
+public class RoadIndex {
+	private int cols, rows;
+	private double[] x, y; // vertex -> map units
+	private int[] from, to; // road -> end vertices
+	private int[] cellStart; // cell -> first position in cellRoads
+	private int[] cellRoads;
+
+	/**
+	 * Builds the index of every road of G.
+	 *
+	 * @param G         The map graph.
+	 * @param V         A list of vertices' coordinates.
+	 * @param mapBounds Coordinate maxima and minima of map.
+	 */
+	RoadIndex(Graph G, List<double[]> V, double[] mapBounds) {
+		int n = G.getSize(), i, e, w;
+		double xL = Math.abs(mapBounds[1]-mapBounds[3]), yL = Math.abs(mapBounds[0]-mapBounds[2]);
+		if(xL == 0) xL = 1;
+		if(yL == 0) yL = 1;
+
+		x = new double[n];
+		y = new double[n];
+		for(i = 0; i < n; i++) {
+			double[] v = V.get(i);
+			x[i] = Math.abs(v[1]-mapBounds[1])/xL;
+			y[i] = 1-Math.abs(v[0]-mapBounds[0])/yL;
+		}
+
+		// Each road once, from its smaller end
+		int m = 0;
+		for(i = 0; i < n; i++)
+			for(e = G.edgeStart(i); e < G.edgeEnd(i); e++)
+				if(G.getTarget(e) >= i) m++;
+		from = new int[m];
+		to = new int[m];
+		m = 0;
+		for(i = 0; i < n; i++) {
+			for(e = G.edgeStart(i); e < G.edgeEnd(i); e++) {
+				w = G.getTarget(e);
+				if(w < i) continue;
+				from[m] = i;
+				to[m++] = w;
+			}
+		}
+
+		cols = rows = Math.max(1, (int) Math.sqrt(m / 2.0));
+
+		// Counting the roads of each cell, then placing them
+		cellStart = new int[cols*rows + 1];
+		for(i = 0; i < m; i++)
+			forEachCell(i, c -> cellStart[c + 1]++);
+		for(i = 0; i < cols*rows; i++)
+			cellStart[i + 1] += cellStart[i];
+		cellRoads = new int[cellStart[cols*rows]];
+		int[] next = Arrays.copyOf(cellStart, cols*rows);
+		for(i = 0; i < m; i++) {
+			final int r = i;
+			forEachCell(i, c -> cellRoads[next[c]++] = r);
+		}
+	}
+
+	private interface CellAction {
+		void accept(int cell);
+	}
+
+	private void forEachCell(int r, CellAction action) {
+		int c0 = col(Math.min(x[from[r]], x[to[r]])), c1 = col(Math.max(x[from[r]], x[to[r]]));
+		int r0 = row(Math.min(y[from[r]], y[to[r]])), r1 = row(Math.max(y[from[r]], y[to[r]]));
+		for(int j = r0; j <= r1; j++)
+			for(int i = c0; i <= c1; i++)
+				action.accept(j*cols + i);
+	}
+
+	private int col(double px) {
+		return Math.max(0, Math.min(cols - 1, (int) (px*cols)));
+	}
+
+	private int row(double py) {
+		return Math.max(0, Math.min(rows - 1, (int) (py*rows)));
+	}
+
+	/**
+	 * Finds the roads whose bounding boxes meet a rectangle.
+	 *
+	 * @param x0 West edge, in map units.
+	 * @param y0 North edge, in map units.
+	 * @param x1 East edge, in map units.
+	 * @param y1 South edge, in map units.
+	 * @return The roads, each once.
+	 */
+	public int[] query(double x0, double y0, double x1, double y1) {
+		if(x1 < 0 || y1 < 0 || x0 > 1 || y0 > 1) return new int[0];
+		int[] found = new int[64];
+		int count = 0;
+
+		int c0 = col(x0), c1 = col(x1), r0 = row(y0), r1 = row(y1);
+		for(int j = r0; j <= r1; j++) {
+			for(int i = c0; i <= c1; i++) {
+				int c = j*cols + i;
+				for(int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+					int r = cellRoads[k];
+
+					// Only from the first cell where the road meets the rectangle
+					int a = from[r], b = to[r];
+					if(i != Math.max(c0, col(Math.min(x[a], x[b])))) continue;
+					if(j != Math.max(r0, row(Math.min(y[a], y[b])))) continue;
+
+					if(count == found.length)
+						found = Arrays.copyOf(found, 2*count);
+					found[count++] = r;
+				}
+			}
+		}
+		return Arrays.copyOf(found, count);
+	}
+
+	/**
+	 * Returns the first end of a road.
+	 *
+	 * @param r The road.
+	 * @return The vertex.
+	 */
+	public int getFrom(int r) {
+		return from[r];
+	}
+
+	/**
+	 * Returns the second end of a road.
+	 *
+	 * @param r The road.
+	 * @return The vertex.
+	 */
+	public int getTo(int r) {
+		return to[r];
+	}
+
+	/**
+	 * Returns the east-west position of a vertex.
+	 *
+	 * @param u The vertex.
+	 * @return The position in map units.
+	 */
+	public double getX(int u) {
+		return x[u];
+	}
+
+	/**
+	 * Returns the north-south position of a vertex.
+	 *
+	 * @param u The vertex.
+	 * @return The position in map units.
+	 */
+	public double getY(int u) {
+		return y[u];
+	}
+
+	/**
+	 * Returns the number of roads.
+	 *
+	 * @return The number of roads.
+	 */
+	public int getRoadCount() {
+		return from.length;
+	}
+}
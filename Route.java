@@ -0,0 +1,120 @@
+import java.util.LinkedList;
+
+/**
+ * The result of a shortest path query: the ordered
+ * vertex path and its total length.
+ * 
+ * @author Kyounghan (Kevin) Min
+ */
+public class Route {
+	static final double MILES_PER_KM = 0.621371192;
+	
+	private int[] path;
+	private double distance;
+	private int settled;
+	
+	/**
+	 * Creates a route.
+	 * 
+	 * @param path The ordered vertex path.
+	 * @param distance Total length in kilometers.
+	 * @param settled Number of vertices the search settled.
+	 */
+	Route(int[] path, double distance, int settled) {
+		this.path = path;
+		this.distance = distance;
+		this.settled = settled;
+	}
+	
+	/**
+	 * Builds the route to vertex v by following the parent
+	 * pointers of a finished search back to its source.
+	 * 
+	 * @param S The search space.
+	 * @param v Ending vertex.
+	 * @return The route.
+	 */
+	static Route fromTree(SearchSpace S, int v) {
+		int k = 0;
+		for(int j = v; j != -1; j = S.getParent(j))
+			k++;
+		
+		int[] path = new int[k];
+		for(int j = v; j != -1; j = S.getParent(j))
+			path[--k] = j;
+		
+		return new Route(path, S.getDist(v), S.getSettledCount());
+	}
+	
+	/**
+	 * Builds a route from a vertex path, adding up the
+	 * road lengths from the start like a one-directional
+	 * search would, so the total is the exact same number.
+	 * 
+	 * @param G The graph.
+	 * @param path The ordered vertex path.
+	 * @param settled Number of vertices the search settled.
+	 * @return The route.
+	 */
+	static Route fromPath(Graph G, int[] path, int settled) {
+		double distance = 0, w;
+		int e;
+		for(int i = 0; i < path.length - 1; i++) {
+			w = Double.POSITIVE_INFINITY;
+			for(e = G.edgeStart(path[i]); e < G.edgeEnd(path[i]); e++)
+				if(G.getTarget(e) == path[i+1] && G.getWeight(e) < w)
+					w = G.getWeight(e);
+			distance += w;
+		}
+		return new Route(path, distance, settled);
+	}
+	
+	/**
+	 * Returns the ordered vertex path.
+	 * 
+	 * @return The path.
+	 */
+	public int[] getPath() {
+		return path;
+	}
+	
+	/**
+	 * Returns the ordered vertex path as a list.
+	 * 
+	 * @return The path.
+	 */
+	public LinkedList<Integer> toList() {
+		LinkedList<Integer> list = new LinkedList<Integer>();
+		for(int u : path)
+			list.add(u);
+		return list;
+	}
+	
+	/**
+	 * Returns the total length in kilometers.
+	 * 
+	 * @return The length.
+	 */
+	public double getDistance() {
+		return distance;
+	}
+	
+	/**
+	 * Returns the total length in miles.
+	 * 
+	 * @return The length.
+	 */
+	public double getMiles() {
+		return distance * MILES_PER_KM;
+	}
+	
+	/**
+	 * Returns the number of vertices the search settled
+	 * while finding this route.
+	 * 
+	 * @return The number of settled vertices.
+	 */
+	public int getSettled() {
+		return settled;
+	}
+}
@@ -0,0 +1,363 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Bounded cache of shortest path query results, shared by
+ * every thread that routes on one map.
+ * </p>
+ *
+ * <p>
+ * Roads go both ways, so the route from u to v is the route
+ * from v to u reversed. Each pair is stored once under the
+ * smaller vertex first, and turned around when asked for the
+ * other way. Paths are kept as plain vertex arrays, and the
+ * size of the cache is counted in stored ints (path length
+ * plus a fixed charge per entry), so a few long routes take
+ * as much room as many short ones.
+ * </p>
+ *
+ * <p>
+ * The cache is split into segments by key, each with its own
+ * lock and its own share of the size, so that threads rarely
+ * wait on each other. Within a segment, either the least
+ * recently used (LRU) or the least frequently used (LFU) route
+ * is evicted first, ties broken by age. LRU takes O(1) time,
+ * and LFU O(log f) for f different use counts.
+ * </p>
+ *
+ * @author Kyounghan (Kevin) Min
+ */
+public class RouteCache {
+
+	/**
+	 * Which route to evict when a segment is full.
+	 */
+	public enum Policy {
+		LRU, LFU
+	}
+
+	private static final int SEGMENTS = 16;
+	private static final int ENTRY_INTS = 16; // bookkeeping charged per entry, in ints
+
+	private Policy policy;
+	private long capacity;
+	private Segment[] segments;
+	private LongAdder hits, misses, evictions;
+
+	/**
+	 * One cached route, stored from the smaller vertex to the larger.
+	 */
+	private static class Entry {
+		long key;
+		int[] path;
+		double distance;
+		int frequency;
+	}
+
+	/**
+	 * Part of the cache with its own lock.
+	 */
+	private class Segment {
+		LinkedHashMap<Long, Entry> map; // in access order for LRU
+		TreeMap<Integer, LinkedHashSet<Entry>> frequencies; // for LFU, oldest first
+		long size, capacity;
+
+		Segment(long capacity) {
+			this.capacity = capacity;
+			map = new LinkedHashMap<Long, Entry>(16, 0.75f, policy == Policy.LRU);
+			if(policy == Policy.LFU)
+				frequencies = new TreeMap<Integer, LinkedHashSet<Entry>>();
+		}
+
+		synchronized Entry get(long key) {
+			Entry E = map.get(key);
+			if(E != null && policy == Policy.LFU) {
+				LinkedHashSet<Entry> set = frequencies.get(E.frequency);
+				set.remove(E);
+				if(set.isEmpty()) frequencies.remove(E.frequency);
+				E.frequency++;
+				frequencies.computeIfAbsent(E.frequency, f -> new LinkedHashSet<Entry>()).add(E);
+			}
+			return E;
+		}
+
+		synchronized void put(Entry E) {
+			long cost = E.path.length + ENTRY_INTS;
+			if(cost > capacity || map.containsKey(E.key)) return;
+
+			while(size + cost > capacity)
+				evict();
+
+			map.put(E.key, E);
+			size += cost;
+			if(policy == Policy.LFU) {
+				E.frequency = 1;
+				frequencies.computeIfAbsent(1, f -> new LinkedHashSet<Entry>()).add(E);
+			}
+		}
+
+		private void evict() {
+			Entry E;
+			if(policy == Policy.LFU) {
+				Map.Entry<Integer, LinkedHashSet<Entry>> least = frequencies.firstEntry();
+				Iterator<Entry> it = least.getValue().iterator();
+				E = it.next();
+				it.remove();
+				if(least.getValue().isEmpty()) frequencies.remove(least.getKey());
+				map.remove(E.key);
+			} else {
+				Iterator<Entry> it = map.values().iterator();
+				E = it.next();
+				it.remove();
+			}
+			size -= E.path.length + ENTRY_INTS;
+			evictions.increment();
+		}
+
+		synchronized void remove(long key) {
+			Entry E = map.remove(key);
+			if(E != null) forget(E);
+		}
+
+		synchronized int invalidate(long[] roads) {
+			int removed = 0;
+			Iterator<Entry> it = map.values().iterator();
+			while(it.hasNext()) {
+				Entry E = it.next();
+				if(uses(E.path, roads)) {
+					it.remove();
+					forget(E);
+					removed++;
+				}
+			}
+			return removed;
+		}
+
+		// Takes an entry already removed from the map out of the size and frequencies
+		private void forget(Entry E) {
+			size -= E.path.length + ENTRY_INTS;
+			if(policy == Policy.LFU) {
+				LinkedHashSet<Entry> set = frequencies.get(E.frequency);
+				set.remove(E);
+				if(set.isEmpty()) frequencies.remove(E.frequency);
+			}
+		}
+
+		synchronized void clear() {
+			map.clear();
+			if(frequencies != null) frequencies.clear();
+			size = 0;
+		}
+
+		synchronized long getSize() {
+			return size;
+		}
+
+		synchronized int getCount() {
+			return map.size();
+		}
+	}
+
+	/**
+	 * Creates an empty route cache.
+	 *
+	 * @param capacity Largest number of ints to store.
+	 * @param policy   Which route to evict first.
+	 */
+	RouteCache(long capacity, Policy policy) {
+		this.capacity = capacity;
+		this.policy = policy;
+		hits = new LongAdder();
+		misses = new LongAdder();
+		evictions = new LongAdder();
+		segments = new Segment[SEGMENTS];
+		for(int i = 0; i < SEGMENTS; i++)
+			segments[i] = new Segment(capacity / SEGMENTS);
+	}
+
+	private static long key(int u, int v) {
+		return (long) Math.min(u, v) << 32 | Math.max(u, v);
+	}
+
+	private Segment segment(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return segments[(int) (h >>> 60) & (SEGMENTS - 1)];
+	}
+
+	/**
+	 * Returns the cached route from u to v, which may have been
+	 * stored as the route from v to u. A turned around route keeps
+	 * the length added up the other way, which may differ from a
+	 * fresh search in the last digit.
+	 *
+	 * @param u Starting vertex.
+	 * @param v Ending vertex.
+	 * @return The route, or null if it is not cached.
+	 */
+	public Route get(int u, int v) {
+		long key = key(u, v);
+		Entry E = segment(key).get(key);
+		if(E == null) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+
+		int[] path = E.path;
+		if(u > v) {
+			int k = path.length;
+			path = new int[k];
+			for(int i = 0; i < k; i++)
+				path[i] = E.path[k - 1 - i];
+		} else {
+			path = path.clone();
+		}
+		return new Route(path, E.distance, 0);
+	}
+
+	/**
+	 * Stores the route from u to v, unless that pair is already
+	 * cached or the route alone is larger than its share of the cache.
+	 *
+	 * @param u Starting vertex.
+	 * @param v Ending vertex.
+	 * @param R The route from u to v.
+	 */
+	public void put(int u, int v, Route R) {
+		Entry E = new Entry();
+		E.key = key(u, v);
+		E.distance = R.getDistance();
+		E.path = R.getPath().clone();
+		if(u > v) {
+			int k = E.path.length;
+			for(int i = 0; i < k / 2; i++) {
+				int t = E.path[i];
+				E.path[i] = E.path[k - 1 - i];
+				E.path[k - 1 - i] = t;
+			}
+		}
+		segment(E.key).put(E);
+	}
+
+	private static boolean uses(int[] path, long[] roads) {
+		for(int i = 0; i + 1 < path.length; i++)
+			if(Arrays.binarySearch(roads, key(path[i], path[i + 1])) >= 0) return true;
+		return false;
+	}
+
+	/**
+	 * Removes the route between u and v, if it is cached.
+	 *
+	 * @param u One end of the route.
+	 * @param v The other end.
+	 */
+	public void remove(int u, int v) {
+		long key = key(u, v);
+		segment(key).remove(key);
+	}
+
+	/**
+	 * Removes every cached route that uses one of the given
+	 * roads, where road i joins u[i] and v[i] either way.
+	 * After roads only got longer or closed, the routes left
+	 * are still the shortest, so nothing else need be dropped.
+	 *
+	 * @param u One end of each road.
+	 * @param v The other end of each road.
+	 * @return The number of routes removed.
+	 */
+	public int invalidate(int[] u, int[] v) {
+		long[] roads = new long[u.length];
+		for(int i = 0; i < u.length; i++)
+			roads[i] = key(u[i], v[i]);
+		Arrays.sort(roads);
+
+		int removed = 0;
+		for(Segment s : segments)
+			removed += s.invalidate(roads);
+		return removed;
+	}
+
+	/**
+	 * Removes every route from the cache. The counters are kept.
+	 */
+	public void clear() {
+		for(Segment s : segments)
+			s.clear();
+	}
+
+	/**
+	 * Returns the number of lookups that found a route.
+	 *
+	 * @return The number of hits.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of lookups that found nothing.
+	 *
+	 * @return The number of misses.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the number of routes evicted to make room.
+	 *
+	 * @return The number of evictions.
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Returns the number of ints currently stored.
+	 *
+	 * @return The size.
+	 */
+	public long getSize() {
+		long size = 0;
+		for(Segment s : segments)
+			size += s.getSize();
+		return size;
+	}
+
+	/**
+	 * Returns the number of routes currently stored.
+	 *
+	 * @return The number of routes.
+	 */
+	public int getCount() {
+		int count = 0;
+		for(Segment s : segments)
+			count += s.getCount();
+		return count;
+	}
+
+	/**
+	 * Returns the largest number of ints the cache stores.
+	 *
+	 * @return The capacity.
+	 */
+	public long getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns which route is evicted first.
+	 *
+	 * @return The eviction policy.
+	 */
+	public Policy getPolicy() {
+		return policy;
+	}
+}
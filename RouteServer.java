@@ -0,0 +1,326 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * <p>
+ * Answers routing questions over HTTP, so that a map is
+ * loaded once and then used by any number of clients.
+ * </p>
+ *
+ * <p>
+ * {@code GET /route?from=<name>&to=<name>} answers with the
+ * route between two intersections as JSON, and may also be
+ * given {@code &algorithm=<name>}. {@code GET /nearest?lat=<lat>&lon=<lon>}
+ * answers with the intersection nearest to a point, and
+ * {@code GET /metrics} with the router's metrics, if it has any.
+ * {@code POST /update?from=<name>&to=<name>&factor=<factor>}
+ * slows down the road between two intersections by a factor
+ * of at least 1 relative to its loaded length, or closes it
+ * if the factor is {@code closed}, while other requests keep
+ * being answered.
+ * </p>
+ *
+ * <p>
+ * Anyone who can reach the server can change roads, so it
+ * only listens on the loopback address unless started on
+ * another one.
+ * </p>
+ *
+ * <p>
+ * The graph, names and router are only read once loaded, so
+ * every request shares them without locking. Each request is
+ * handled on a thread of its own. Where the Java runtime has
+ * virtual threads, those are used, so that tens of thousands
+ * of requests may wait at once; otherwise a pool of ordinary
+ * threads that grows as needed is used.
+ * </p>
+ *
+ * @author Kyounghan (Kevin) Min
+ */
+public class RouteServer {
+	private Router router;
+	private Map<String, Integer> D;
+	private Map<Integer, String> RevD;
+	private Router.Algorithm algorithm;
+	private HttpServer server;
+	private ExecutorService executor;
+	private boolean virtual;
+
+	/**
+	 * Creates a server for a loaded map. It does not listen until started.
+	 *
+	 * @param router    The router of the map.
+	 * @param D         Key dictionary.
+	 * @param RevD      Reversed key dictionary.
+	 * @param algorithm The algorithm used when a request does not name one.
+	 */
+	RouteServer(Router router, Map<String, Integer> D, Map<Integer, String> RevD, Router.Algorithm algorithm) {
+		this.router = router;
+		this.D = D;
+		this.RevD = RevD;
+		this.algorithm = algorithm;
+	}
+
+	/**
+	 * Starts listening on a port of the loopback address, so
+	 * that only this machine can send requests.
+	 *
+	 * @param port The port, or 0 for any free one.
+	 * @throws IOException If the port could not be opened.
+	 */
+	public void start(int port) throws IOException {
+		start(InetAddress.getLoopbackAddress(), port);
+	}
+
+	/**
+	 * Starts listening on a port of an address.
+	 *
+	 * @param address The address, or the wildcard address for all of them.
+	 * @param port    The port, or 0 for any free one.
+	 * @throws IOException If the port could not be opened.
+	 */
+	public void start(InetAddress address, int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(address, port), 1024);
+		server.createContext("/route", guard(this::route));
+		server.createContext("/nearest", guard(this::nearest));
+		server.createContext("/metrics", guard(this::metrics));
+		server.createContext("/update", guard(this::update));
+		executor = newExecutor();
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * Returns a thread per task executor on virtual threads, or
+	 * a cached thread pool if this Java runtime has none. Looked
+	 * up by reflection so that the code still builds on Java 17.
+	 *
+	 * @return The executor.
+	 */
+	private ExecutorService newExecutor() {
+		try {
+			ExecutorService E = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			virtual = true;
+			return E;
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool(r -> {
+				Thread t = new Thread(r, "http");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+	}
+
+	/**
+	 * Returns whether requests are handled on virtual threads.
+	 *
+	 * @return Whether virtual threads are used.
+	 */
+	public boolean isVirtual() {
+		return virtual;
+	}
+
+	/**
+	 * Returns the address the server listens on.
+	 *
+	 * @return The address.
+	 */
+	public InetAddress getAddress() {
+		return server.getAddress().getAddress();
+	}
+
+	/**
+	 * Returns the port the server listens on.
+	 *
+	 * @return The port.
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Stops listening, waiting at most the given number of
+	 * seconds for requests being handled to finish.
+	 *
+	 * @param seconds Longest wait.
+	 */
+	public void stop(int seconds) {
+		server.stop(seconds);
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Wraps a handler so that a bug in it is answered with 500
+	 * instead of the connection being dropped without a response.
+	 *
+	 * @param handler The handler.
+	 * @return The wrapped handler.
+	 */
+	private static HttpHandler guard(HttpHandler handler) {
+		return exchange -> {
+			try {
+				handler.handle(exchange);
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+				error(exchange, 500, "the request could not be answered");
+			}
+		};
+	}
+
+	private void route(HttpExchange exchange) throws IOException {
+		Map<String, String> Q = query(exchange);
+		String from = Q.get("from"), to = Q.get("to");
+		if(from == null || to == null) {
+			error(exchange, 400, "from and to must be given");
+			return;
+		}
+		Integer u = D.get(from), v = D.get(to);
+		if(u == null || v == null) {
+			error(exchange, 404, "unknown intersection " + (u == null ? from : to));
+			return;
+		}
+
+		Router.Algorithm A = algorithm;
+		if(Q.containsKey("algorithm")) {
+			try {
+				A = Router.Algorithm.valueOf(Q.get("algorithm").toUpperCase());
+			} catch (IllegalArgumentException e) {
+				error(exchange, 400, "unknown algorithm " + Q.get("algorithm"));
+				return;
+			}
+		}
+
+		Route R = router.route(u, v, A);
+		if(R == null) {
+			error(exchange, 404, from + " and " + to + " are not connected");
+			return;
+		}
+
+		StringBuilder json = new StringBuilder();
+		json.append("{\"from\":").append(quote(from)).append(",\"to\":").append(quote(to));
+		json.append(",\"miles\":").append(R.getMiles()).append(",\"path\":[");
+		int[] P = R.getPath();
+		for(int i = 0; i < P.length; i++) {
+			if(i > 0) json.append(',');
+			json.append(quote(RevD.get(P[i])));
+		}
+		json.append("]}");
+		send(exchange, 200, json.toString());
+	}
+
+	private void nearest(HttpExchange exchange) throws IOException {
+		Map<String, String> Q = query(exchange);
+		double lat, lon;
+		try {
+			lat = Double.parseDouble(Q.get("lat"));
+			lon = Double.parseDouble(Q.get("lon"));
+		} catch (NullPointerException | NumberFormatException e) {
+			error(exchange, 400, "lat and lon must be given as numbers");
+			return;
+		}
+		if(!(Math.abs(lat) <= 90 && Math.abs(lon) <= 180)) {
+			error(exchange, 400, "lat must be within -90 and 90, and lon within -180 and 180");
+			return;
+		}
+
+		int u = router.getSpatialIndex().nearest(lat, lon);
+		if(u == -1) {
+			error(exchange, 404, "the map has no intersections");
+			return;
+		}
+		double uLat = router.getLatitudes()[u], uLon = router.getLongitudes()[u];
+		double miles = Utility.haversine(lat, lon, uLat, uLon) * Route.MILES_PER_KM;
+		send(exchange, 200, "{\"name\":" + quote(RevD.get(u)) + ",\"lat\":" + uLat + ",\"lon\":" + uLon
+				+ ",\"miles\":" + miles + "}");
+	}
+
+	private void update(HttpExchange exchange) throws IOException {
+		if(!exchange.getRequestMethod().equals("POST")) {
+			exchange.getResponseHeaders().set("Allow", "POST");
+			error(exchange, 405, "roads can only be changed with POST");
+			return;
+		}
+		Map<String, String> Q = query(exchange);
+		String from = Q.get("from"), to = Q.get("to"), factor = Q.get("factor");
+		if(from == null || to == null || factor == null) {
+			error(exchange, 400, "from, to and factor must be given");
+			return;
+		}
+		Integer u = D.get(from), v = D.get(to);
+		if(u == null || v == null) {
+			error(exchange, 404, "unknown intersection " + (u == null ? from : to));
+			return;
+		}
+		if(!router.hasRoad(u, v)) {
+			error(exchange, 404, "there is no road between " + from + " and " + to);
+			return;
+		}
+
+		int changed;
+		try {
+			double f = factor.equals("closed") ? Double.POSITIVE_INFINITY : Double.parseDouble(factor);
+			changed = router.setFactor(u, v, f);
+		} catch (IllegalArgumentException e) {
+			error(exchange, 400, "factor must be a number of at least 1, or closed");
+			return;
+		}
+		send(exchange, 200, "{\"from\":" + quote(from) + ",\"to\":" + quote(to) + ",\"factor\":" + quote(factor)
+				+ ",\"edges\":" + changed + "}");
+	}
+
+	private void metrics(HttpExchange exchange) throws IOException {
+		Metrics M = router.getMetrics();
+		if(M == null) error(exchange, 404, "metrics are off");
+		else send(exchange, 200, M.getJson());
+	}
+
+	private static Map<String, String> query(HttpExchange exchange) {
+		Map<String, String> Q = new HashMap<String, String>();
+		String raw = exchange.getRequestURI().getRawQuery();
+		if(raw == null) return Q;
+		for(String pair : raw.split("&")) {
+			int i = pair.indexOf('=');
+			if(i <= 0) continue;
+			Q.put(URLDecoder.decode(pair.substring(0, i), StandardCharsets.UTF_8),
+					URLDecoder.decode(pair.substring(i + 1), StandardCharsets.UTF_8));
+		}
+		return Q;
+	}
+
+	private static String quote(String s) {
+		StringBuilder q = new StringBuilder(s.length() + 2).append('"');
+		for(int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if(c == '"' || c == '\\') q.append('\\').append(c);
+			else if(c < 0x20) q.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+			else q.append(c);
+		}
+		return q.append('"').toString();
+	}
+
+	private static void error(HttpExchange exchange, int status, String message) throws IOException {
+		send(exchange, status, "{\"error\":" + quote(message) + "}");
+	}
+
+	private static void send(HttpExchange exchange, int status, String json) throws IOException {
+		byte[] body = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		try(OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+}
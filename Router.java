@@ -0,0 +1,535 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ * Answers shortest path queries on one loaded map graph.
+ * The graph is never modified, and every query borrows
+ * a search space from a pool and hands it back when done,
+ * so a single router may be shared by many threads.
+ * </p>
+ * 
+ * <p>
+ * Roads may be made slower or closed while queries run.
+ * An update copies the road lengths, changes the copy and
+ * swaps in a new graph sharing everything else, so every
+ * query sees either all or none of an update. Roads may only
+ * get longer than they were when the map was loaded, which
+ * keeps the great-circle and landmark heuristics, built on
+ * the loaded lengths, from ever overestimating. Cached routes
+ * over a slowed road are dropped, and the contraction
+ * hierarchy is repaired in the background, or built again if
+ * a road got shorter, with bidirectional Dijkstra answering
+ * its queries until it is ready. Updates coming in faster
+ * than that are caught up with together, at most once a
+ * second.
+ * </p>
+ * 
+ * <p>
+ * The pool is a lock-free queue. Search spaces are only
+ * created when every pooled one is in use, so the pool
+ * grows to the number of queries running at once.
+ * </p>
+ * 
+ * @author Kyounghan (Kevin) Min
+ */
+public class Router {
+	private static final long REBUILD_INTERVAL = 1000; // shortest time between hierarchy updates, in ms
+	
+	/**
+	 * The shortest path algorithms a router can use.
+	 */
+	public enum Algorithm {
+		DIJKSTRA, ASTAR, ALT, BIDIRECTIONAL, CH
+	}
+	
+	private volatile Graph G; // with the current road lengths
+	private Graph base; // with the road lengths as loaded
+	private double[] lat, lon;
+	private Heuristic greatCircle;
+	private ConcurrentLinkedQueue<SearchSpace> pool;
+	private volatile ContractionHierarchy ch;
+	private volatile Landmarks landmarks;
+	private volatile RouteCache cache;
+	private volatile Metrics metrics;
+	private volatile SpatialIndex index;
+	private AtomicBoolean rebuilding;
+	private volatile long lastRebuild; // when the hierarchy was last brought up to date
+	private Components components;
+	
+	/**
+	 * Creates a router for a graph.
+	 * 
+	 * @param G The graph.
+	 * @param V A list of vertices' coordinates.
+	 */
+	Router(Graph G, List<double[]> V) {
+		this.G = G;
+		base = G;
+		rebuilding = new AtomicBoolean();
+		int n = G.getSize();
+		lat = new double[n];
+		lon = new double[n];
+		for(int i = 0; i < n; i++) {
+			lat[i] = V.get(i)[0];
+			lon[i] = V.get(i)[1];
+		}
+		greatCircle = (a, b) -> Utility.haversine(lat[a], lon[a], lat[b], lon[b]);
+		pool = new ConcurrentLinkedQueue<SearchSpace>();
+		components = new Components(G);
+	}
+	
+	/**
+	 * Calculates the shortest path between two vertices
+	 * using Dijkstra's algorithm.
+	 * 
+	 * @param u Starting vertex.
+	 * @param v Ending vertex.
+	 * @return The route, or null if u and v are not connected.
+	 */
+	public Route route(int u, int v) {
+		return route(u, v, Algorithm.DIJKSTRA);
+	}
+	
+	/**
+	 * Calculates the shortest path between two vertices,
+	 * or finds it in the route cache if there is one.
+	 * Vertices in different components are answered at
+	 * once, without searching or using the cache.
+	 * 
+	 * @param u Starting vertex.
+	 * @param v Ending vertex.
+	 * @param algorithm The algorithm to use.
+	 * @return The route, or null if u and v are not connected.
+	 */
+	public Route route(int u, int v, Algorithm algorithm) {
+		if(!components.isSameComponent(u, v)) return null;
+		
+		RouteCache C = cache;
+		Graph g = G;
+		if(C == null) return search(g, u, v, algorithm);
+		
+		Route R = C.get(u, v);
+		if(R == null) {
+			R = search(g, u, v, algorithm);
+			if(R != null) {
+				C.put(u, v, R);
+				
+				// A route found just before an update may have missed its invalidation
+				if(G != g) C.remove(u, v);
+			}
+		}
+		return R;
+	}
+	
+	private Route search(Graph G, int u, int v, Algorithm algorithm) {
+		Metrics M = metrics;
+		long time = M == null ? 0 : System.nanoTime();
+		SearchSpace S = acquire(), B = null;
+		Route R;
+		try {
+			switch(algorithm) {
+			case ASTAR:
+				R = Utility.AStar(G, greatCircle, S, u, v);
+				break;
+			case ALT:
+				R = Utility.AStar(G, getLandmarks(), S, u, v);
+				break;
+			case BIDIRECTIONAL:
+				B = acquire();
+				R = Utility.BidirectionalDijkstra(G, S, B, u, v);
+				break;
+			case CH:
+				B = acquire();
+				ContractionHierarchy H = getHierarchy();
+				if(H.getGraph() == G) {
+					R = H.route(S, B, u, v);
+				} else {
+					rebuildHierarchy();
+					R = Utility.BidirectionalDijkstra(G, S, B, u, v);
+				}
+				break;
+			default:
+				R = Utility.Dijkstra(G, S, u, v);
+			}
+			if(M != null) M.record(System.nanoTime() - time, S, B, R);
+			return R;
+		} finally {
+			release(S);
+			if(B != null) release(B);
+		}
+	}
+	
+	/**
+	 * Finds every vertex within a distance of any of
+	 * the starting vertices.
+	 * 
+	 * @param sources Starting vertices.
+	 * @param limit The largest distance in kilometers.
+	 * @return The vertices within the limit and their
+	 * distances, nearest first.
+	 */
+	public Isochrone isochrone(int[] sources, double limit) {
+		Graph g = G;
+		SearchSpace S = acquire();
+		try {
+			return Utility.DijkstraWithin(g, S, sources, limit);
+		} finally {
+			release(S);
+		}
+	}
+	
+	/**
+	 * Finds the routes to the k facilities nearest to a
+	 * vertex by road, with one search that stops once
+	 * they are found. Facilities in other components
+	 * are never looked for.
+	 * 
+	 * @param u Starting vertex.
+	 * @param F The facilities.
+	 * @param k Number of facilities to find.
+	 * @return The routes, nearest first, fewer than k
+	 * if fewer can be reached.
+	 */
+	public Route[] nearest(int u, Facilities F, int k) {
+		k = Math.min(k, F.getCount(components.getLabel(u)));
+		if(k <= 0) return new Route[0];
+		
+		Graph g = G;
+		SearchSpace S = acquire();
+		try {
+			int[] found = Utility.DijkstraNearest(g, S, u, F, k);
+			Route[] R = new Route[found.length];
+			for(int i = 0; i < found.length; i++)
+				R[i] = Route.fromTree(S, found[i]);
+			return R;
+		} finally {
+			release(S);
+		}
+	}
+	
+	/**
+	 * Finds the k shortest loopless routes between two
+	 * vertices, as alternatives to the shortest one.
+	 *
+	 * @param u Starting vertex.
+	 * @param v Ending vertex.
+	 * @param k Number of routes to find.
+	 * @return The routes, shortest first, fewer than k
+	 * if there are no more, or none if u and v are not
+	 * connected.
+	 */
+	public Route[] alternatives(int u, int v, int k) {
+		if(!components.isSameComponent(u, v)) return new Route[0];
+
+		Graph g = G;
+		SearchSpace T = acquire(), S = acquire(), B = acquire();
+		try {
+			return new KShortestPaths(g, T, S, B).find(u, v, k);
+		} finally {
+			release(T);
+			release(S);
+			release(B);
+		}
+	}
+
+	/**
+	 * Creates a facility set over the graph.
+	 * 
+	 * @param vertices The facility vertices.
+	 * @return The facilities.
+	 */
+	public Facilities facilities(int[] vertices) {
+		return new Facilities(vertices, components, G.getSize());
+	}
+	
+	/**
+	 * Returns the connected components of the graph
+	 * as it was loaded.
+	 * 
+	 * @return The components.
+	 */
+	public Components getComponents() {
+		return components;
+	}
+	
+	/**
+	 * Returns the contraction hierarchy of the graph,
+	 * building it on first use. After roads have been
+	 * updated, this may be the hierarchy of an older
+	 * graph until it is repaired or rebuilt.
+	 * 
+	 * @return The contraction hierarchy.
+	 */
+	public ContractionHierarchy getHierarchy() {
+		if(ch == null) {
+			synchronized(this) {
+				if(ch == null) ch = new ContractionHierarchy(G);
+			}
+		}
+		return ch;
+	}
+	
+	// Brings the hierarchy up to the current graph on a background
+	// thread, repairing it if roads only got longer and building it
+	// again otherwise. Updates that come in meanwhile are caught up
+	// with together, at most once per REBUILD_INTERVAL.
+	private void rebuildHierarchy() {
+		if(!rebuilding.compareAndSet(false, true)) return;
+		Thread t = new Thread(() -> {
+			try {
+				Graph g;
+				do {
+					long wait = lastRebuild + REBUILD_INTERVAL - System.currentTimeMillis();
+					if(wait > 0) Thread.sleep(wait);
+					lastRebuild = System.currentTimeMillis();
+					g = G;
+					ContractionHierarchy H = ch.repair(g);
+					ch = H != null ? H : new ContractionHierarchy(g);
+				} while(G != g);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				rebuilding.set(false);
+			}
+		}, "hierarchy");
+		t.setDaemon(true);
+		t.start();
+	}
+	
+	/**
+	 * Multiplies the length of every road between u and v
+	 * by a factor, relative to its length when the map was
+	 * loaded. A factor of 1 restores the road, and an
+	 * infinite factor closes it.
+	 * 
+	 * @param u One end of the road.
+	 * @param v The other end of the road.
+	 * @param factor The factor, at least 1.
+	 * @return The number of directed edges changed, which
+	 * is 0 if the road already had that factor.
+	 * @throws IllegalArgumentException If the factor is less
+	 * than 1 or there is no road between u and v.
+	 */
+	public int setFactor(int u, int v, double factor) {
+		return setFactors(new int[] { u }, new int[] { v }, new double[] { factor });
+	}
+	
+	/**
+	 * Closes every road between u and v.
+	 * 
+	 * @param u One end of the road.
+	 * @param v The other end of the road.
+	 * @return The number of directed edges changed.
+	 */
+	public int close(int u, int v) {
+		return setFactor(u, v, Double.POSITIVE_INFINITY);
+	}
+	
+	/**
+	 * Reveals whether there is a road between u and v,
+	 * open or closed.
+	 * 
+	 * @param u One end of the road.
+	 * @param v The other end of the road.
+	 * @return Whether there is a road.
+	 */
+	public boolean hasRoad(int u, int v) {
+		for(int e = base.edgeStart(u); e < base.edgeEnd(u); e++)
+			if(base.getTarget(e) == v) return true;
+		return false;
+	}
+	
+	/**
+	 * Changes many roads at once, as setFactor does for
+	 * each of u[i], v[i] and factor[i]. Queries see either
+	 * all of the changes or none of them, and the road
+	 * lengths are copied only once.
+	 * 
+	 * @param u One end of each road.
+	 * @param v The other end of each road.
+	 * @param factor The factor of each road, at least 1.
+	 * @return The number of directed edges changed.
+	 * @throws IllegalArgumentException If a factor is less
+	 * than 1 or there is no road between some u[i] and v[i].
+	 * Nothing is changed then.
+	 */
+	public synchronized int setFactors(int[] u, int[] v, double[] factor) {
+		for(double f : factor)
+			if(!(f >= 1))
+				throw new IllegalArgumentException("A road can only be slowed down or closed, not sped up (factor " + f + ").");
+		for(int i = 0; i < u.length; i++)
+			if(!hasRoad(u[i], v[i]))
+				throw new IllegalArgumentException("There is no road between vertices " + u[i] + " and " + v[i] + ".");
+		
+		Graph g = G;
+		double[] W = g.copyWeights();
+		int[] raisedU = new int[u.length], raisedV = new int[u.length];
+		int changed = 0, raised = 0, e, a, b;
+		boolean lowered = false, up;
+		double w;
+		for(int i = 0; i < u.length; i++) {
+			up = false;
+			for(int side = 0; side < 2; side++) {
+				a = side == 0 ? u[i] : v[i];
+				b = side == 0 ? v[i] : u[i];
+				for(e = g.edgeStart(a); e < g.edgeEnd(a); e++) {
+					if(g.getTarget(e) != b) continue;
+					w = factor[i] == Double.POSITIVE_INFINITY ? factor[i] : base.getWeight(e) * factor[i];
+					if(w == W[e]) continue;
+					if(w < W[e]) lowered = true;
+					else up = true;
+					W[e] = w;
+					changed++;
+				}
+			}
+			if(up) {
+				raisedU[raised] = u[i];
+				raisedV[raised++] = v[i];
+			}
+		}
+		if(changed == 0) return 0;
+		G = g.withWeights(W);
+		
+		// Shorter roads may shorten any route, longer ones only those over them
+		RouteCache C = cache;
+		if(C != null) {
+			if(lowered) C.clear();
+			else C.invalidate(Arrays.copyOf(raisedU, raised), Arrays.copyOf(raisedV, raised));
+		}
+		return changed;
+	}
+	
+	/**
+	 * Returns the spatial index of the intersections,
+	 * building it on first use.
+	 * 
+	 * @return The spatial index.
+	 */
+	public SpatialIndex getSpatialIndex() {
+		if(index == null) {
+			synchronized(this) {
+				if(index == null) index = new SpatialIndex(G, lat, lon);
+			}
+		}
+		return index;
+	}
+	
+	/**
+	 * Returns the landmarks used by ALT search,
+	 * computing 16 of them on first use unless
+	 * some were set beforehand. They are computed
+	 * on the road lengths as loaded, which no update
+	 * can make shorter.
+	 * 
+	 * @return The landmarks.
+	 */
+	public Landmarks getLandmarks() {
+		if(landmarks == null) {
+			synchronized(this) {
+				if(landmarks == null) landmarks = Landmarks.compute(base, lat, lon, 16);
+			}
+		}
+		return landmarks;
+	}
+	
+	/**
+	 * Sets the landmarks used by ALT search.
+	 * 
+	 * @param landmarks The landmarks.
+	 */
+	public void setLandmarks(Landmarks landmarks) {
+		this.landmarks = landmarks;
+	}
+	
+	/**
+	 * Sets the cache that routes are looked up in before
+	 * searching and stored in after, or null for none.
+	 * 
+	 * @param cache The route cache.
+	 */
+	public void setCache(RouteCache cache) {
+		this.cache = cache;
+	}
+	
+	/**
+	 * Returns the route cache, if there is one.
+	 * 
+	 * @return The route cache, or null.
+	 */
+	public RouteCache getCache() {
+		return cache;
+	}
+	
+	/**
+	 * Sets the metrics that every search is recorded in,
+	 * or turns recording off if null. Routes found in
+	 * the cache are not searches and are not recorded.
+	 * 
+	 * @param metrics The metrics, or null.
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Returns the metrics searches are recorded in.
+	 * 
+	 * @return The metrics, or null if there are none.
+	 */
+	public Metrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Returns the latitude of each vertex.
+	 * 
+	 * @return The latitudes.
+	 */
+	public double[] getLatitudes() {
+		return lat;
+	}
+	
+	/**
+	 * Returns the longitude of each vertex.
+	 * 
+	 * @return The longitudes.
+	 */
+	public double[] getLongitudes() {
+		return lon;
+	}
+	
+	/**
+	 * Borrows a reset search space from the pool,
+	 * creating one if the pool is empty.
+	 * 
+	 * @return The search space.
+	 */
+	SearchSpace acquire() {
+		SearchSpace S = pool.poll();
+		if(S == null) S = new SearchSpace(G.getSize());
+		S.reset();
+		return S;
+	}
+	
+	/**
+	 * Returns a search space to the pool.
+	 * 
+	 * @param S The search space.
+	 */
+	void release(SearchSpace S) {
+		pool.offer(S);
+	}
+	
+	/**
+	 * Returns the graph this router searches, with the
+	 * road lengths as of the last update.
+	 * 
+	 * @return The graph.
+	 */
+	public Graph getGraph() {
+		return G;
+	}
+}
@@ -0,0 +1,179 @@
+/**
+ * <p>
+ * Per-query working memory for the shortest path searches
+ * in Utility: tentative distances, parent pointers,
+ * settled flags and the frontier heap. Keeping this
+ * state out of the Graph lets one loaded graph answer
+ * any number of queries at the same time, each on its
+ * own search space.
+ * </p>
+ * 
+ * <p>
+ * A search space is reused from query to query. Instead
+ * of clearing its arrays, reset() moves it to a new epoch
+ * and each entry only counts if it was written during the
+ * current one, so a reset costs O(1) no matter how large
+ * the graph is.
+ * </p>
+ * 
+ * <p>
+ * A search space must only be used by one thread at a time.
+ * </p>
+ * 
+ * @author Kyounghan (Kevin) Min
+ */
+public class SearchSpace {
+	private double[] dist;
+	private int[] parent;
+	private int[] seen; // epoch in which dist and parent were written
+	private int[] done; // epoch in which the vertex was settled
+	private int epoch;
+	private int settled;
+	private int relaxed; // times a vertex got a shorter distance
+	private IndexedHeap heap;
+	private int n;
+	
+	/**
+	 * Initializes a search space for a graph.
+	 * 
+	 * @param n Number of vertices in the graph.
+	 */
+	SearchSpace(int n) {
+		this.n = n;
+		dist = new double[n];
+		parent = new int[n];
+		seen = new int[n];
+		done = new int[n];
+		heap = new IndexedHeap(n);
+		epoch = 0;
+	}
+	
+	/**
+	 * Forgets the previous search. Every vertex becomes
+	 * unreached and unsettled, and the heap is emptied.
+	 */
+	public void reset() {
+		heap.clear();
+		epoch++;
+		settled = 0;
+		relaxed = 0;
+		
+		// Stamps would be ambiguous after wrapping around
+		if(epoch == Integer.MAX_VALUE) {
+			for(int i = 0; i < n; i++)
+				seen[i] = done[i] = 0;
+			epoch = 1;
+		}
+	}
+	
+	/**
+	 * Returns the tentative distance of vertex u, which is
+	 * infinite if u has not been reached.
+	 * 
+	 * @param u The vertex.
+	 * @return The distance.
+	 */
+	public double getDist(int u) {
+		return seen[u] == epoch ? dist[u] : Double.POSITIVE_INFINITY;
+	}
+	
+	/**
+	 * Returns the vertex that vertex u was reached from,
+	 * or -1 if u is a source or has not been reached.
+	 * 
+	 * @param u The vertex.
+	 * @return The parent vertex.
+	 */
+	public int getParent(int u) {
+		return seen[u] == epoch ? parent[u] : -1;
+	}
+	
+	/**
+	 * Records that vertex u was reached from vertex p
+	 * at distance d, and queues u in the heap.
+	 * 
+	 * @param u The vertex.
+	 * @param d The distance.
+	 * @param p The parent vertex, or -1 for a source.
+	 */
+	public void reach(int u, double d, int p) {
+		reach(u, d, p, d);
+	}
+	
+	/**
+	 * Records that vertex u was reached from vertex p
+	 * at distance d, and queues u in the heap with
+	 * priority k instead of its distance.
+	 * 
+	 * @param u The vertex.
+	 * @param d The distance.
+	 * @param p The parent vertex, or -1 for a source.
+	 * @param k The heap priority.
+	 */
+	public void reach(int u, double d, int p, double k) {
+		seen[u] = epoch;
+		dist[u] = d;
+		parent[u] = p;
+		relaxed++;
+		heap.push(u, k);
+	}
+	
+	/**
+	 * Marks vertex u as settled.
+	 * 
+	 * @param u The vertex.
+	 */
+	public void settle(int u) {
+		done[u] = epoch;
+		settled++;
+	}
+	
+	/**
+	 * Reveals whether vertex u has been settled.
+	 * 
+	 * @param u The vertex.
+	 * @return Whether u is settled.
+	 */
+	public boolean isSettled(int u) {
+		return done[u] == epoch;
+	}
+	
+	/**
+	 * Returns the number of vertices settled
+	 * since the last reset.
+	 * 
+	 * @return The number of settled vertices.
+	 */
+	public int getSettledCount() {
+		return settled;
+	}
+	
+	/**
+	 * Returns the number of times a vertex was reached
+	 * at a shorter distance than before, counting the
+	 * sources, since the last reset.
+	 * 
+	 * @return The number of relaxed edges.
+	 */
+	public int getRelaxedCount() {
+		return relaxed;
+	}
+	
+	/**
+	 * Returns the frontier heap of this search space.
+	 * 
+	 * @return The heap.
+	 */
+	public IndexedHeap getHeap() {
+		return heap;
+	}
+	
+	/**
+	 * Returns the number of vertices this search space covers.
+	 * 
+	 * @return The number of vertices.
+	 */
+	public int getSize() {
+		return n;
+	}
+}
@@ -0,0 +1,239 @@
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Finds the intersections nearest to a latitude and longitude,
+ * so that routes can start and end at GPS coordinates.
+ * </p>
+ *
+ * <p>
+ * Coordinates are projected onto a flat plane in kilometers
+ * (equirectangular, scaled by the cosine of the map's middle
+ * latitude), which is accurate to well under a percent across
+ * a city. The projected points go into a k-d tree, stored
+ * implicitly in arrays: the median of each range is its root,
+ * and its halves are split on the other axis. Building takes
+ * O(|V| log |V|), and a nearest-neighbour query visits about
+ * O(log |V|) points.
+ * </p>
+ *
+ * <p>
+ * Only intersections with at least one road are indexed, since
+ * a route cannot start from any other.
+ * </p>
+ *
+ * @author Kyounghan (Kevin) Min
+ */
+public class SpatialIndex {
+	private static final double EARTH_RADIUS = 6371; // kilometers
+
+	private double scale; // kilometers per radian of longitude
+	private int size;
+	private int[] vertex; // tree position -> vertex
+	private double[] x, y; // tree position -> projected coordinates
+
+	/**
+	 * Builds the index over every vertex of G with a road.
+	 *
+	 * @param G   The graph.
+	 * @param lat Latitude of each vertex.
+	 * @param lon Longitude of each vertex.
+	 */
+	SpatialIndex(Graph G, double[] lat, double[] lon) {
+		int n = G.getSize();
+		double minLat = Double.POSITIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+		for(int u = 0; u < n; u++) {
+			if(G.getDegree(u) == 0) continue;
+			size++;
+			minLat = Math.min(minLat, lat[u]);
+			maxLat = Math.max(maxLat, lat[u]);
+		}
+		scale = size == 0 ? EARTH_RADIUS : EARTH_RADIUS * Math.cos(Math.toRadians((minLat + maxLat) / 2));
+
+		vertex = new int[size];
+		x = new double[size];
+		y = new double[size];
+		int i = 0;
+		for(int u = 0; u < n; u++) {
+			if(G.getDegree(u) == 0) continue;
+			vertex[i] = u;
+			x[i] = projectX(lon[u]);
+			y[i] = projectY(lat[u]);
+			i++;
+		}
+		build(0, size, 0);
+	}
+
+	private double projectX(double lon) {
+		return Math.toRadians(lon) * scale;
+	}
+
+	private double projectY(double lat) {
+		return Math.toRadians(lat) * EARTH_RADIUS;
+	}
+
+	// Puts the median of [lo, hi) by the axis in the middle, then the halves
+	private void build(int lo, int hi, int axis) {
+		if(hi - lo <= 1) return;
+		int mid = (lo + hi) >>> 1;
+		select(lo, hi - 1, mid, axis == 0 ? x : y);
+		build(lo, mid, axis ^ 1);
+		build(mid + 1, hi, axis ^ 1);
+	}
+
+	// Quickselect: leaves the k-th smallest of c[lo..hi] at k
+	private void select(int lo, int hi, int k, double[] c) {
+		while(lo < hi) {
+			double pivot = c[(lo + hi) >>> 1];
+			int i = lo, j = hi;
+			while(i <= j) {
+				while(c[i] < pivot) i++;
+				while(c[j] > pivot) j--;
+				if(i <= j) swap(i++, j--);
+			}
+			if(k <= j) hi = j;
+			else if(k >= i) lo = i;
+			else return;
+		}
+	}
+
+	private void swap(int i, int j) {
+		int v = vertex[i];
+		vertex[i] = vertex[j];
+		vertex[j] = v;
+		double t = x[i];
+		x[i] = x[j];
+		x[j] = t;
+		t = y[i];
+		y[i] = y[j];
+		y[j] = t;
+	}
+
+	/**
+	 * Finds the intersection nearest to a point.
+	 *
+	 * @param lat Latitude of the point.
+	 * @param lon Longitude of the point.
+	 * @return The nearest vertex, or -1 if the index is empty.
+	 */
+	public int nearest(double lat, double lon) {
+		int[] found = nearest(lat, lon, 1);
+		return found.length == 0 ? -1 : found[0];
+	}
+
+	/**
+	 * Finds the k intersections nearest to a point.
+	 *
+	 * @param lat Latitude of the point.
+	 * @param lon Longitude of the point.
+	 * @param k   Number of intersections.
+	 * @return The vertices, nearest first (fewer than k if the index is smaller).
+	 */
+	public int[] nearest(double lat, double lon, int k) {
+		k = Math.min(k, size);
+		Nearest N = new Nearest(k);
+		if(k > 0) nearest(0, size, 0, projectX(lon), projectY(lat), N);
+
+		int[] found = new int[N.count];
+		for(int i = 0; i < N.count; i++)
+			found[i] = vertex[N.position[i]];
+		return found;
+	}
+
+	/**
+	 * The k best points found so far, kept sorted by distance.
+	 * Fine for the small k that callers ask for.
+	 */
+	private static class Nearest {
+		int[] position;
+		double[] dist2;
+		int count;
+
+		Nearest(int k) {
+			position = new int[k];
+			dist2 = new double[k];
+		}
+
+		double bound() {
+			return count < position.length ? Double.POSITIVE_INFINITY : dist2[count - 1];
+		}
+
+		void offer(int p, double d2) {
+			if(d2 >= bound()) return;
+			int i = count < position.length ? count++ : count - 1;
+			while(i > 0 && dist2[i-1] > d2) {
+				position[i] = position[i-1];
+				dist2[i] = dist2[i-1];
+				i--;
+			}
+			position[i] = p;
+			dist2[i] = d2;
+		}
+	}
+
+	private void nearest(int lo, int hi, int axis, double px, double py, Nearest N) {
+		if(lo >= hi) return;
+		int mid = (lo + hi) >>> 1;
+		double dx = x[mid] - px, dy = y[mid] - py;
+		N.offer(mid, dx*dx + dy*dy);
+
+		// Near half first, then the far half only if it can hold anything closer
+		double split = axis == 0 ? dx : dy;
+		if(split > 0) {
+			nearest(lo, mid, axis ^ 1, px, py, N);
+			if(split*split < N.bound()) nearest(mid + 1, hi, axis ^ 1, px, py, N);
+		} else {
+			nearest(mid + 1, hi, axis ^ 1, px, py, N);
+			if(split*split < N.bound()) nearest(lo, mid, axis ^ 1, px, py, N);
+		}
+	}
+
+	/**
+	 * Finds every intersection within a distance of a point.
+	 *
+	 * @param lat    Latitude of the point.
+	 * @param lon    Longitude of the point.
+	 * @param radius The distance in kilometers.
+	 * @return The vertices, in no particular order.
+	 */
+	public int[] within(double lat, double lon, double radius) {
+		Within W = new Within();
+		within(0, size, 0, projectX(lon), projectY(lat), radius*radius, W);
+		return Arrays.copyOf(W.vertices, W.count);
+	}
+
+	/**
+	 * The vertices found so far by a radius query.
+	 */
+	private static class Within {
+		int[] vertices = new int[16];
+		int count;
+
+		void add(int u) {
+			if(count == vertices.length)
+				vertices = Arrays.copyOf(vertices, 2*count);
+			vertices[count++] = u;
+		}
+	}
+
+	private void within(int lo, int hi, int axis, double px, double py, double r2, Within W) {
+		if(lo >= hi) return;
+		int mid = (lo + hi) >>> 1;
+		double dx = x[mid] - px, dy = y[mid] - py;
+		if(dx*dx + dy*dy <= r2) W.add(vertex[mid]);
+
+		// Skipping a half if the circle lies entirely on the other side
+		double split = axis == 0 ? dx : dy;
+		if(split >= 0 || split*split <= r2) within(lo, mid, axis ^ 1, px, py, r2, W);
+		if(split <= 0 || split*split <= r2) within(mid + 1, hi, axis ^ 1, px, py, r2, W);
+	}
+
+	/**
+	 * Returns the number of indexed intersections.
+	 *
+	 * @return The size.
+	 */
+	public int getSize() {
+		return size;
+	}
+}
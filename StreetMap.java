@@ -1,10 +1,16 @@
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -15,8 +21,6 @@ import java.util.Map;
  * @author Kyounghan (Kevin) Min
  */
 public class StreetMap {
-	
-	public static String mouse = "idle";
 
 	/**
 	 * The main driver method.
@@ -39,6 +43,113 @@ public class StreetMap {
 	 *        The shortest path is also displayed in the map.
 	 * </li>
 	 * 
+	 * The following options may be added to any of them:
+	 * 
+	 * <li>
+	 * --algorithm (dijkstra | astar | alt | bidirectional | ch)
+	 *    --> Chooses the shortest path algorithm. Dijkstra's algorithm is the default.
+	 *        alt uses landmark distances saved next to the map file, computing them
+	 *        if they are not there yet. ch preprocesses the map into a contraction
+	 *        hierarchy first.
+	 * </li>
+	 * 
+	 * <li>
+	 * --landmarks (count)
+	 *    --> Number of landmarks for alt (16 by default). Recomputes them if the
+	 *        saved ones are a different number.
+	 * </li>
+	 * 
+	 * <li>
+	 * --stats
+	 *    --> Also prints how long loading took, and how many vertices the search
+	 *        settled and how long it took.
+	 * </li>
+	 * 
+	 * <li>
+	 * --compile (snapshot_path)
+	 *    --> Writes a binary snapshot of the map instead. The snapshot may be
+	 *        given as the map file path later on, and loads without any parsing.
+	 * </li>
+	 * 
+	 * <li>
+	 * --batch (pairs_file_path) [--out (output_file_path)]
+	 *    --> Routes every start and destination pair in the pairs file, one pair
+	 *        per line, on all cores. The answers are written in the same order to
+	 *        the output file (or the console), followed by the number of queries
+	 *        per second and the median and 99th percentile query times.
+	 * </li>
+	 * 
+	 * <li>
+	 * --matrix (names_file_path) [--out (output_file_path)]
+	 *    --> Writes a table of the distances in miles between every two
+	 *        intersections named in the names file, one name per line.
+	 * </li>
+	 * 
+	 * <li>
+	 * --cache (max_ints) [--cache-policy (lru | lfu)]
+	 *    --> Keeps found routes in a cache of the given size, counted in stored
+	 *        path vertices, and answers repeated pairs from it. Useful with
+	 *        --batch, which also prints the cache hit and miss counts.
+	 * </li>
+	 * 
+	 * <li>
+	 * --from-coord (lat,lon) --to-coord (lat,lon)
+	 *    --> Calculates the shortest path between the intersections nearest to the
+	 *        given coordinates, found in a spatial index. Either one may also be
+	 *        given as an intersection name with --directions instead.
+	 * </li>
+	 * 
+	 * <li>
+	 * --tiles (directory_path)
+	 *    --> Keeps the map tiles the GUI draws in the directory once they no
+	 *        longer fit in memory, so they need not be drawn again.
+	 * </li>
+	 * 
+	 * <li>
+	 * --metrics (text | json) [--metrics-every (seconds)]
+	 *    --> Records how long every search took and how many vertices it settled,
+	 *        edges it relaxed and heap operations it did, and prints their
+	 *        percentiles at the end (and every few seconds if asked). They can
+	 *        also be watched through JMX while the program runs.
+	 * </li>
+	 * 
+	 * <li>
+	 * --isochrone (miles) (intersection)... [--out (output_file_path)]
+	 *    --> Lists every intersection within the distance of any of the given
+	 *        intersections (or --from-coord), nearest first. With --show, the
+	 *        roads within reach are highlighted on the map.
+	 * </li>
+	 * 
+	 * <li>
+	 * --closest (k) (facilities_file_path) (intersection) [--out (output_file_path)]
+	 *    --> Finds the k intersections named in the facilities file, one name
+	 *        per line, that are nearest by road to the given intersection (or
+	 *        --from-coord), with one search.
+	 * </li>
+	 * 
+	 * <li>
+	 * --alternatives (k)
+	 *    --> With --directions, finds the k shortest routes that do not pass
+	 *        any intersection twice instead of only the shortest, and prints
+	 *        them ranked, shortest first.
+	 * </li>
+	 * 
+	 * <li>
+	 * --updates (updates_file_path)
+	 *    --> Slows down or closes roads before routing. Each line of the file is
+	 *        a start and end intersection of a road and a factor of at least 1
+	 *        to multiply its length by, or "closed".
+	 * </li>
+	 * 
+	 * <li>
+	 * --serve (port) [--bind (address)]
+	 *    --> Loads the map once and answers routing requests over HTTP until
+	 *        stopped: /route?from=(name)&to=(name) and /nearest?lat=(lat)&lon=(lon),
+	 *        both answered in JSON. Only requests from this machine are taken
+	 *        unless another address to listen on is given, such as 0.0.0.0 for
+	 *        all of them; anyone who can reach the server can change roads.
+	 * </li>
+	 * 
 	 * Example args: src/monroe.txt --show --directions i185852 i294475 
 	 * 
 	 * @param args The arguments in suggested format as described in Project 3
@@ -53,100 +164,625 @@ public class StreetMap {
 		List<double[]> V = new ArrayList<double[]>(); // vertex dimension list
 		double[] mapBounds = { 0, 0, 0, 0 }; // latitude longitude bounds (minLat, minLon, maxLat, maxLon)
 		Graph G = null;
+		long loadTime = System.nanoTime();
 		
 		try {
-			G = getData(dataFile, D, RevD, V, mapBounds);
+			if (MapSnapshot.isSnapshot(dataFile))
+				G = MapSnapshot.read(dataFile, D, RevD, V, mapBounds);
+			else
+				G = getData(dataFile, D, RevD, V, mapBounds);
 		} catch (IOException e) {
 			e.printStackTrace();
+			return;
 		}
+		loadTime = System.nanoTime() - loadTime;
+		Router router = new Router(G, V);
 
-		// Read additional arguments
-		int argCount = args.length; // This is assuming that the arguments provided are actually formatted correctly
-		switch (argCount) {
-		case 2: // If there are only 2 arguments, it should just be --show
-			if (args[1].equals("--show")) {
-				getGUI(G, V, mapBounds, "Mapping: " + args[0]);
-			} break;
-			
-		case 4: // If there are 4 arguments, it has to be --directions and the two
-				// intersections.
-			if (args[1].equals("--directions")) {
-				LinkedList<Integer> P = Utility.Dijkstra(G, D.get(args[2]), D.get(args[3]));
-				if(P == null) {
-					System.out.println(args[2] + " and " + args[3] + " are not connected.");
-					break;
-				}
-				printPath(G, P, D, RevD);
-				
-				double[] v;
-				for (Integer i : P) {
-					v = V.get(i);
-					V.set(i, new double[] { v[0], v[1], 1 });
-				}
-			} break;
-			
-		case 5: // If there are 5 arguments, both functions have been called, and we need to
-				// figure out which arguments are the intersections. Fortunately there are only
-				// 2 possible valid configurations
-			if (args[1].equals("--show")) { // In this case the intersections will be indexes 3 and 4
-				LinkedList<Integer> P = Utility.Dijkstra(G, D.get(args[3]), D.get(args[4]));
-				if(P == null) {
-					System.out.println(args[3] + " and " + args[4] + " are not connected.");
-					break;
-				}
-				printPath(G, P, D, RevD);
-				
-				double[] v;
-				for (Integer i : P) {
-					v = V.get(i);
-					V.set(i, new double[] { v[0], v[1], 1 });
-				}
-				
-				getGUI(G, V, P, mapBounds, "Mapping: " + args[0], "Going from " + args[3] + " to " + args[4]);
-
+		// Read additional arguments. Anything that is not an option is taken
+		// as an intersection name, so the options may come in any order.
+		boolean show = false, directions = false, stats = false;
+		int landmarks = 0, serve = -1;
+		long cache = 0, metricsEvery = 0;
+		double isochrone = -1;
+		int closest = 0, alternatives = 0;
+		String facilities = null;
+		double[] fromCoord = null, toCoord = null;
+		File tiles = null;
+		RouteCache.Policy policy = RouteCache.Policy.LRU;
+		String bind = null;
+		String compile = null, batch = null, matrix = null, out = null, metrics = null, updates = null;
+		Router.Algorithm algorithm = Router.Algorithm.DIJKSTRA;
+		List<String> names = new ArrayList<String>();
+		for (int k = 1; k < args.length; k++) {
+			switch (args[k]) {
+			case "--show":
+				show = true;
 				break;
-
+			case "--directions":
+				directions = true;
+				break;
+			case "--algorithm":
+				algorithm = Router.Algorithm.valueOf(args[++k].toUpperCase());
+				break;
+			case "--stats":
+				stats = true;
+				break;
+			case "--landmarks":
+				landmarks = Integer.parseInt(args[++k]);
+				break;
+			case "--compile":
+				compile = args[++k];
+				break;
+			case "--batch":
+				batch = args[++k];
+				break;
+			case "--matrix":
+				matrix = args[++k];
+				break;
+			case "--cache":
+				cache = Long.parseLong(args[++k]);
+				break;
+			case "--cache-policy":
+				policy = RouteCache.Policy.valueOf(args[++k].toUpperCase());
+				break;
+			case "--from-coord":
+				fromCoord = parseCoord(args[++k]);
+				directions = true;
+				break;
+			case "--to-coord":
+				toCoord = parseCoord(args[++k]);
+				directions = true;
+				break;
+			case "--tiles":
+				tiles = new File(args[++k]);
+				break;
+			case "--metrics":
+				metrics = args[++k].toLowerCase();
+				break;
+			case "--metrics-every":
+				metricsEvery = Long.parseLong(args[++k]);
+				break;
+			case "--isochrone":
+				isochrone = Double.parseDouble(args[++k]);
+				break;
+			case "--closest":
+				closest = Integer.parseInt(args[++k]);
+				facilities = args[++k];
+				break;
+			case "--alternatives":
+				alternatives = Integer.parseInt(args[++k]);
+				break;
+			case "--updates":
+				updates = args[++k];
+				break;
+			case "--serve":
+				serve = Integer.parseInt(args[++k]);
+				break;
+			case "--bind":
+				bind = args[++k];
+				break;
+			case "--out":
+				out = args[++k];
+				break;
+			default:
+				names.add(args[k]);
 			}
-			else if (args[1].equals("--directions")) { // And in this case the intersections will be indexes 2 and 3
-				LinkedList<Integer> P = Utility.Dijkstra(G, D.get(args[3]), D.get(args[4]));
-				if(P == null) {
-					System.out.println(args[3] + " and " + args[4] + " are not connected.");
-					break;
-				}				printPath(G, P, D, RevD);
-				
-				double[] v;
-				for (Integer i : P) {
-					v = V.get(i);
-					V.set(i, new double[] { v[0], v[1], 1 });
-				}
+		}
+		
+		if (stats) {
+			double megabytes = new File(dataFile).length() / 1e6;
+			System.out.println("Loaded " + G.getSize() + " intersections and " + G.getEdgeCount() / 2
+					+ " roads in " + loadTime / 1e6 + " ms (" + megabytes / (loadTime / 1e9) + " MB/s).");
+			Components C = router.getComponents();
+			System.out.println("Found " + C.getCount() + " connected components in " + C.getBuildMillis()
+					+ " ms, the largest with " + C.getLargestSize() + " intersections.");
+		}
+		
+		if (compile != null) {
+			try {
+				MapSnapshot.write(compile, G, RevD, V, mapBounds);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			return;
+		}
+		
+		if (!directions && batch == null && matrix == null && serve < 0 && isochrone < 0
+				&& facilities == null) {
+			if (show)
+				getGUI(G, V, mapBounds, "Mapping: " + args[0], "", null, tiles);
+			return;
+		}
+		
+		if (algorithm == Router.Algorithm.CH && stats) {
+			ContractionHierarchy ch = router.getHierarchy();
+			System.out.println("Contraction hierarchy built in " + ch.getBuildMillis() + " ms with "
+					+ ch.getShortcutCount() + " shortcuts.");
+		}
+		if (algorithm == Router.Algorithm.ALT)
+			router.setLandmarks(getLandmarks(router, dataFile + ".landmarks", landmarks, stats));
+		
+		if (cache > 0)
+			router.setCache(new RouteCache(cache, policy));
+		
+		if (metrics != null) {
+			Metrics M = new Metrics();
+			M.register();
+			if (metricsEvery > 0)
+				M.startDump(metricsEvery, metrics.equals("json"), System.err);
+			router.setMetrics(M);
+		}
+		
+		if (updates != null) {
+			try {
+				applyUpdates(router, D, updates, stats);
+			} catch (IOException e) {
+				e.printStackTrace();
+				return;
+			}
+		}
+		
+		if (serve >= 0) {
+			RouteServer server = new RouteServer(router, D, RevD, algorithm);
+			try {
+				if (bind == null)
+					server.start(serve);
+				else
+					server.start(InetAddress.getByName(bind), serve);
+			} catch (IOException e) {
+				e.printStackTrace();
+				return;
+			}
+			System.out.println("Serving " + args[0] + " on " + server.getAddress().getHostAddress() + " port "
+					+ server.getPort() + " ("
+					+ (server.isVirtual() ? "virtual threads" : "thread pool") + ").");
+			return;
+		}
+		
+		if (batch != null) {
+			BatchRouter B = new BatchRouter(router, D, RevD, algorithm);
+			try {
+				B.run(batch, out);
+			} catch (IOException e) {
+				e.printStackTrace();
+				return;
+			}
+			System.out.println("Routed " + B.getQueryCount() + " pairs in " + B.getElapsedMillis() + " ms ("
+					+ B.getThroughput() + " queries/s).");
+			System.out.println("Query time p50 " + B.getLatencyMillis(0.5) + " ms, p99 "
+					+ B.getLatencyMillis(0.99) + " ms.");
+			RouteCache C = router.getCache();
+			if (C != null)
+				System.out.println("Cache hits " + C.getHits() + ", misses " + C.getMisses() + ", evictions "
+						+ C.getEvictions() + ", " + C.getCount() + " routes in " + C.getSize() + " of "
+						+ C.getCapacity() + " ints.");
+			printMetrics(router, metrics);
+			return;
+		}
+		
+		if (matrix != null) {
+			try {
+				writeMatrix(router, D, matrix, out, stats);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			return;
+		}
+		
+		// Coordinates are replaced by their nearest intersections
+		if (fromCoord != null) {
+			String name = getNearest(router, RevD, fromCoord, stats);
+			if (name == null)
+				return;
+			names.add(0, name);
+		}
+		if (toCoord != null) {
+			String name = getNearest(router, RevD, toCoord, stats);
+			if (name == null)
+				return;
+			names.add(fromCoord != null ? 1 : names.size(), name);
+		}
+		
+		if (isochrone >= 0) {
+			Isochrone I;
+			try {
+				I = writeIsochrone(router, D, RevD, names, isochrone, out, stats);
+			} catch (IOException e) {
+				e.printStackTrace();
+				return;
+			}
+			if (show && I != null)
+				getGUI(G, V, mapBounds, "Mapping: " + args[0], "Within " + isochrone + " miles of " + String.join(", ", names),
+						I.toMask(G.getSize()), tiles);
+			return;
+		}
+		
+		if (facilities != null) {
+			try {
+				writeClosest(router, D, RevD, names.get(0), closest, facilities, out, stats);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			return;
+		}
+		
+		String from = names.get(0), to = names.get(1);
+		Integer u = D.get(from), v = D.get(to);
+		if (u == null || v == null) {
+			System.out.println("Unknown intersection " + (u == null ? from : to) + ".");
+			return;
+		}
+		long time = System.nanoTime();
+		if (alternatives > 0) {
+			Route[] A = router.alternatives(u, v, alternatives);
+			time = System.nanoTime() - time;
+			if (A.length == 0) {
+				System.out.println(from + " and " + to + " are not connected.");
+				return;
+			}
+			for (int i = 0; i < A.length; i++) {
+				System.out.println("Route " + (i + 1) + ":");
+				printPath(A[i], RevD);
+			}
+			if (stats) {
+				System.out.println("Settled " + A[0].getSettled() + " vertices over all searches.");
+				System.out.println("Query took " + time / 1e6 + " ms.");
+			}
+			
+			if (show) {
+				// The shortest is drawn as the path, and the roads of all of them highlighted
+				boolean[] overlay = new boolean[G.getSize()];
+				for (Route R : A)
+					for (int i : R.getPath())
+						overlay[i] = true;
 				
-				getGUI(G, V, P, mapBounds, "Mapping: " + args[0], "Going from " + args[3] + " to " + args[4]);
-
-				break;
+				getGUI(G, V, A[0].toList(), mapBounds, "Mapping: " + args[0],
+						A.length + " routes from " + from + " to " + to, overlay, tiles);
 			}
-
+			return;
 		}
-
+		
+		Route R = router.route(u, v, algorithm);
+		time = System.nanoTime() - time;
+		if (R == null) {
+			System.out.println(from + " and " + to + " are not connected.");
+			return;
+		}
+		printPath(R, RevD);
+		if (stats) {
+			System.out.println("Settled " + R.getSettled() + " of " + G.getSize() + " vertices.");
+			System.out.println("Query took " + time / 1e6 + " ms.");
+		}
+		printMetrics(router, metrics);
+		
+		if (show)
+			getGUI(G, V, R.toList(), mapBounds, "Mapping: " + args[0], "Going from " + from + " to " + to, null, tiles);
+	}
+	
+	/**
+	 * Finds every intersection within a distance of the named ones and
+	 * writes them, nearest first, as tab separated lines of the name and
+	 * miles, to the output file or the console.
+	 * 
+	 * @param router  The router of the map.
+	 * @param D       Key dictionary.
+	 * @param RevD    Reversed key dictionary.
+	 * @param names   The starting intersection names.
+	 * @param miles   The distance in miles.
+	 * @param outFile The path to the output text file, or null.
+	 * @param stats   Whether to print how long the search took.
+	 * @return The intersections found, or null if a name is unknown.
+	 * @throws IOException If the output file could not be written.
+	 * 
+	 * @author Kyounghan (Kevin) Min
+	 */
+	private static Isochrone writeIsochrone(Router router, Map<String, Integer> D, Map<Integer, String> RevD,
+			List<String> names, double miles, String outFile, boolean stats) throws IOException {
+		int[] sources = new int[names.size()];
+		for (int i = 0; i < sources.length; i++) {
+			Integer u = D.get(names.get(i));
+			if (u == null) {
+				System.out.println("Unknown intersection " + names.get(i) + ".");
+				return null;
+			}
+			sources[i] = u;
+		}
+		
+		long time = System.nanoTime();
+		Isochrone I = router.isochrone(sources, miles / Route.MILES_PER_KM);
+		time = System.nanoTime() - time;
+		
+		Writer out = new BufferedWriter(outFile == null ? new OutputStreamWriter(System.out) : new FileWriter(outFile));
+		for (int i = 0; i < I.getCount(); i++)
+			out.write(RevD.get(I.getVertex(i)) + "\t" + I.getDistance(i) * Route.MILES_PER_KM + "\n");
+		if (outFile == null)
+			out.flush();
+		else
+			out.close();
+		
+		System.out.println(I.getCount() + " intersections within " + miles + " miles.");
+		if (stats)
+			System.out.println("Search took " + time / 1e6 + " ms.");
+		return I;
+	}
+	
+	/**
+	 * Finds the k facilities named in the facilities file that are nearest
+	 * to an intersection by road, and writes them nearest first as tab
+	 * separated lines of the start, facility, miles and path, to the output
+	 * file or the console.
+	 * 
+	 * @param router         The router of the map.
+	 * @param D              Key dictionary.
+	 * @param RevD           Reversed key dictionary.
+	 * @param from           The starting intersection name.
+	 * @param k              Number of facilities to find.
+	 * @param facilitiesFile The path to the facilities file, one name per line.
+	 * @param outFile        The path to the output text file, or null.
+	 * @param stats          Whether to print how long the search took.
+	 * @throws IOException If a file could not be read or written.
+	 * 
+	 * @author Kyounghan (Kevin) Min
+	 */
+	private static void writeClosest(Router router, Map<String, Integer> D, Map<Integer, String> RevD, String from,
+			int k, String facilitiesFile, String outFile, boolean stats) throws IOException {
+		Integer u = D.get(from);
+		if (u == null) {
+			System.out.println("Unknown intersection " + from + ".");
+			return;
+		}
+		List<String> lines = Files.readAllLines(Paths.get(facilitiesFile));
+		int[] vertices = new int[lines.size()];
+		int n = 0;
+		for (String line : lines) {
+			line = line.trim();
+			if (line.isEmpty())
+				continue;
+			if (!D.containsKey(line)) {
+				System.out.println("Unknown intersection " + line + " in " + facilitiesFile + ".");
+				return;
+			}
+			vertices[n++] = D.get(line);
+		}
+		Facilities F = router.facilities(Arrays.copyOf(vertices, n));
+		
+		long time = System.nanoTime();
+		Route[] R = router.nearest(u, F, k);
+		time = System.nanoTime() - time;
+		
+		Writer out = new BufferedWriter(outFile == null ? new OutputStreamWriter(System.out) : new FileWriter(outFile));
+		for (Route r : R) {
+			int[] P = r.getPath();
+			out.write(from + "\t" + RevD.get(P[P.length - 1]) + "\t" + r.getMiles() + "\t");
+			for (int i = 0; i < P.length; i++)
+				out.write((i > 0 ? " -> " : "") + RevD.get(P[i]));
+			out.write("\n");
+		}
+		if (outFile == null)
+			out.flush();
+		else
+			out.close();
+		
+		if (R.length < k)
+			System.out.println("Only " + R.length + " of " + F.getCount() + " facilities can be reached from " + from + ".");
+		if (stats)
+			System.out.println("Search took " + time / 1e6 + " ms, settling " + (R.length == 0 ? 0 : R[0].getSettled())
+					+ " vertices.");
+	}
+	
+	/**
+	 * Reads road updates from a file, one per line as a start
+	 * intersection, an end intersection and a factor or "closed",
+	 * and applies them to the router all at once.
+	 * 
+	 * @param router The router of the map.
+	 * @param D      Key dictionary.
+	 * @param path   The updates file path.
+	 * @param stats  Whether to print how many roads changed.
+	 * @throws IOException If the file could not be read or a line is malformed.
+	 * 
+	 * @author Kyounghan (Kevin) Min
+	 */
+	private static void applyUpdates(Router router, Map<String, Integer> D, String path, boolean stats)
+			throws IOException {
+		List<String> lines = Files.readAllLines(Paths.get(path));
+		int[] u = new int[lines.size()], v = new int[lines.size()];
+		double[] factor = new double[lines.size()];
+		int k = 0;
+		for (int i = 0; i < lines.size(); i++) {
+			String line = lines.get(i).trim();
+			if (line.isEmpty())
+				continue;
+			String[] parts = line.split("\\s+");
+			if (parts.length != 3 || !D.containsKey(parts[0]) || !D.containsKey(parts[1]))
+				throw new IOException("Line " + (i + 1) + " of the updates file is not two known intersections and a factor.");
+			u[k] = D.get(parts[0]);
+			v[k] = D.get(parts[1]);
+			if (!router.hasRoad(u[k], v[k]))
+				throw new IOException("Line " + (i + 1) + " of the updates file is not a road: there is none between "
+						+ parts[0] + " and " + parts[1] + ".");
+			double f;
+			try {
+				f = parts[2].equals("closed") ? Double.POSITIVE_INFINITY : Double.parseDouble(parts[2]);
+			} catch (NumberFormatException e) {
+				throw new IOException("Line " + (i + 1) + " of the updates file has a bad factor.");
+			}
+			// Roads can only be slowed down or closed, as in Router.setFactors
+			if (!(f >= 1))
+				throw new IOException("Line " + (i + 1) + " of the updates file has a factor that is not at least 1: " + parts[2] + ".");
+			factor[k++] = f;
+		}
+		
+		long time = System.nanoTime();
+		int changed = router.setFactors(Arrays.copyOf(u, k), Arrays.copyOf(v, k), Arrays.copyOf(factor, k));
+		time = System.nanoTime() - time;
+		if (stats)
+			System.out.println("Updated " + changed / 2 + " roads in " + time / 1e6 + " ms.");
+	}
+	
+	/**
+	 * Prints the metrics of the router, if it has any.
+	 * 
+	 * @param router The router of the map.
+	 * @param format text or json.
+	 * 
+	 * @author Kyounghan (Kevin) Min
+	 */
+	private static void printMetrics(Router router, String format) {
+		Metrics M = router.getMetrics();
+		if (M == null)
+			return;
+		M.stopDump();
+		System.out.println("json".equals(format) ? M.getJson() : M.toString());
+	}
+	
+	/**
+	 * Reads the landmarks saved at the given path, or computes
+	 * and saves them there if there are none or if a different
+	 * number of landmarks is asked for.
+	 * 
+	 * @param router The router of the map.
+	 * @param path   The landmark file path.
+	 * @param k      Number of landmarks, or 0 for any saved number (16 if none).
+	 * @param stats  Whether to print how long computing took.
+	 * @return The landmarks.
+	 * 
+	 * @author Kyounghan (Kevin) Min
+	 */
+	private static Landmarks getLandmarks(Router router, String path, int k, boolean stats) {
+		Graph G = router.getGraph();
+		Landmarks L = null;
+		if (new File(path).exists()) {
+			try {
+				L = Landmarks.load(path, G);
+			} catch (IOException e) {
+				System.out.println(e.getMessage());
+			}
+		}
+		if (L != null && (k == 0 || L.getCount() == k))
+			return L;
+		
+		L = Landmarks.compute(G, router.getLatitudes(), router.getLongitudes(), k == 0 ? 16 : k);
+		if (stats)
+			System.out.println(L.getCount() + " landmarks computed in " + L.getBuildMillis() + " ms.");
+		try {
+			L.save(path);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return L;
+	}
+	
+	/**
+	 * Reads a latitude and longitude written as "lat,lon".
+	 * 
+	 * @param s The coordinates.
+	 * @return The latitude and longitude.
+	 * 
+	 * @author Kyounghan (Kevin) Min
+	 */
+	private static double[] parseCoord(String s) {
+		String[] parts = s.split(",");
+		if (parts.length != 2)
+			throw new IllegalArgumentException("Coordinates must be given as lat,lon: " + s);
+		return new double[] { Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim()) };
+	}
+	
+	/**
+	 * Finds the name of the intersection nearest to the given coordinates.
+	 * 
+	 * @param router The router of the map.
+	 * @param RevD   The reversed key dictionary.
+	 * @param coord  The latitude and longitude.
+	 * @param stats  Whether to print which intersection was found and how far it is.
+	 * @return The intersection name, or null if the map has no intersections.
+	 * 
+	 * @author Kyounghan (Kevin) Min
+	 */
+	private static String getNearest(Router router, Map<Integer, String> RevD, double[] coord, boolean stats) {
+		long time = System.nanoTime();
+		int u = router.getSpatialIndex().nearest(coord[0], coord[1]);
+		time = System.nanoTime() - time;
+		if (u == -1) {
+			System.out.println("The map has no intersections.");
+			return null;
+		}
+		double miles = Utility.haversine(coord[0], coord[1], router.getLatitudes()[u], router.getLongitudes()[u])
+				* Route.MILES_PER_KM;
+		if (stats)
+			System.out.println("Nearest intersection to " + coord[0] + "," + coord[1] + " is " + RevD.get(u) + ", "
+					+ miles + " miles away (found in " + time / 1e6 + " ms).");
+		return RevD.get(u);
+	}
+	
+	/**
+	 * Computes the distances between every two intersections named in
+	 * the names file, one name per line, and writes them as a table in
+	 * miles with one tab separated row per intersection.
+	 * 
+	 * @param router    The router of the map.
+	 * @param D         The key dictionary.
+	 * @param namesFile The path to the names text file.
+	 * @param outFile   The path to the output text file, or null for the console.
+	 * @param stats     Whether to print how long computing took.
+	 * @throws IOException If a file could not be read or written.
+	 * 
+	 * @author Kyounghan (Kevin) Min
+	 */
+	private static void writeMatrix(Router router, Map<String, Integer> D, String namesFile, String outFile,
+			boolean stats) throws IOException {
+		List<String> names = new ArrayList<String>();
+		for (String line : Files.readAllLines(Paths.get(namesFile))) {
+			line = line.trim();
+			if (line.isEmpty())
+				continue;
+			if (!D.containsKey(line)) {
+				System.out.println("Unknown intersection " + line + " in " + namesFile + ".");
+				return;
+			}
+			names.add(line);
+		}
+		int[] vertices = new int[names.size()];
+		for (int i = 0; i < vertices.length; i++)
+			vertices[i] = D.get(names.get(i));
+		
+		DistanceMatrix M = DistanceMatrix.compute(router, vertices, vertices);
+		
+		Writer out = new BufferedWriter(outFile == null ? new OutputStreamWriter(System.out) : new FileWriter(outFile));
+		for (String name : names)
+			out.write("\t" + name);
+		out.write("\n");
+		for (int i = 0; i < M.getRows(); i++) {
+			out.write(names.get(i));
+			for (int j = 0; j < M.getCols(); j++)
+				out.write("\t" + M.get(i, j) * Route.MILES_PER_KM);
+			out.write("\n");
+		}
+		if (outFile == null)
+			out.flush();
+		else
+			out.close();
+		
+		if (stats)
+			System.out.println(M.getRows() + "x" + M.getCols() + " distance matrix computed in " + M.getBuildMillis()
+					+ " ms.");
 	}
 	
 	/**
 	 * Prints the directions to the console in the format specified by the handout.
 	 * 
-	 * @param G The graph.
-	 * @param P The list of vertex indexes that were calculated by Dijkstra's
-	 *          algorithm.
-	 * @param D The key dictionary.
+	 * @param R    The route that was calculated by Dijkstra's algorithm.
+	 * @param RevD The reversed key dictionary.
 	 * 
 	 * @author Nathaniel Webber
 	 */
-	private static void printPath(Graph G, List<Integer> P, Map<String, Integer> D, Map<Integer, String> RevD) {
-		double kiloDistance = G.getMark(P.get(P.size() - 1));
-		double mileDistance = kiloDistance * 0.621371192;
-		for (int i = 0; i < P.size() - 1; i++)
-			System.out.print(RevD.get(P.get(i)) + " -> ");
-		System.out.print(P.get(P.size() - 1));
+	private static void printPath(Route R, Map<Integer, String> RevD) {
+		int[] P = R.getPath();
+		for (int i = 0; i < P.length - 1; i++)
+			System.out.print(RevD.get(P[i]) + " -> ");
+		System.out.print(RevD.get(P[P.length - 1]));
 		System.out.println();
-		System.out.println("The path is : " + mileDistance + " miles.");
+		System.out.println("The path is : " + R.getMiles() + " miles.");
 	}
 	
 	/**
@@ -159,57 +795,20 @@ public class StreetMap {
 	 * @param mapBounds Coordinate maxima and minima of map.
 	 * @param title GUI display title.
 	 * @param subtitle GUI display subtitle.
+	 * @param overlay Intersections whose roads are highlighted, or null.
+	 * @param tiles Directory to keep map tiles in, or null.
 	 * 
 	 * @author Kyounghan (Kevin) Min
 	 */
-	private static void getGUI(Graph G, List<double[]> V, List<Integer> P, double[] mapBounds, String title, String subtitle) {
+	private static void getGUI(Graph G, List<double[]> V, List<Integer> P, double[] mapBounds, String title, String subtitle,
+			boolean[] overlay, File tiles) {
 		GUI gui = new GUI(G, V, P, mapBounds);
+		gui.setTileDirectory(tiles);
 		gui.setTitle(title);
 		gui.setSubtitle(subtitle);
+		if (overlay != null)
+			gui.setOverlay(overlay);
 		gui.updateMap(true);
-		
-		// Getting updates
-		int rc = 0, lc = 0, i = 0, j = 0;
-		while(true) {
-			
-			if(i > 0) i++;
-			if(i > 25) lc = i = 0;
-			
-			if(j > 0) j++;
-			if(j > 25) rc = j = 0;
-			
-			// Left click
-			if(gui.hasFocus() && mouse.equals("LC")) {
-				mouse = "idle";
-				lc++;
-				i++;
-				
-				if(lc > 1) {
-					gui.zoom(2.0);
-					lc = 0;
-				}
-				gui.updateMap(false);
-			}
-			
-			// Right click
-			else if(gui.hasFocus() && mouse.equals("RC")) {
-				mouse = "idle";
-				rc++;
-				j++;
-				
-				if(rc > 1) {
-					gui.zoom(0.5);
-					rc = 0;
-				}
-				gui.updateMap(false);
-			}
-						
-			try {
-				Thread.sleep(10);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-		}
 	}
 	
 	/**
@@ -219,63 +818,27 @@ public class StreetMap {
 	 * @param V A list of vertices' coordinates.
 	 * @param mapBounds Coordinate maxima and minima of map.
 	 * @param title GUI display title.
+	 * @param subtitle GUI display subtitle.
+	 * @param overlay Intersections whose roads are highlighted, or null.
+	 * @param tiles Directory to keep map tiles in, or null.
 	 * 
 	 * @author Kyounghan (Kevin) Min
 	 */
-	private static void getGUI(Graph G, List<double[]> V, double[] mapBounds, String title) {
+	private static void getGUI(Graph G, List<double[]> V, double[] mapBounds, String title, String subtitle,
+			boolean[] overlay, File tiles) {
 		GUI gui = new GUI(G, V, mapBounds);
+		gui.setTileDirectory(tiles);
 		gui.setTitle(title);
-		gui.setSubtitle("");
+		gui.setSubtitle(subtitle);
+		if (overlay != null)
+			gui.setOverlay(overlay);
 		gui.updateMap(true);
-		
-		// Getting updates
-		int rc = 0, lc = 0, i = 0, j = 0;
-		while(true) {
-			
-			if(i > 0) i++;
-			if(i > 25) lc = i = 0;
-			
-			if(j > 0) j++;
-			if(j > 25) rc = j = 0;
-			
-			// Left click
-			if(gui.hasFocus() && mouse.equals("LC")) {
-				mouse = "idle";
-				lc++;
-				i++;
-				
-				if(lc > 1) {
-					gui.zoom(2.0);
-					lc = 0;
-				}
-				gui.updateMap(false);
-			}
-			
-			// Right click
-			else if(gui.hasFocus() && mouse.equals("RC")) {
-				mouse = "idle";
-				rc++;
-				j++;
-				
-				if(rc > 1) {
-					gui.zoom(0.5);
-					rc = 0;
-				}
-				gui.updateMap(false);
-			}
-						
-			try {
-				Thread.sleep(10);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-		}
 	}
-
+	
 	/**
 	 * Reads and takes data from the data file, writing the key dictionary D and
 	 * vertex dimension list V. A map graph of the data is also generated and
-	 * returned.
+	 * returned. The parsing itself is done by MapParser.
 	 * 
 	 * @param path The path to input text file.
 	 * @param D    Key dictionary.
@@ -289,77 +852,6 @@ public class StreetMap {
 	 */
 	private static Graph getData(String path, Map<String, Integer> D, Map<Integer, String> RevD, 
 			List<double[]> V, double[] mapBounds) throws IOException {
-
-		BufferedReader reader = new BufferedReader(new FileReader(path));
-
-		List<double[]> E = new ArrayList<double[]>(); // temporary edge list
-		int i = 0, u, v;
-		String line = reader.readLine(), key;
-		double lat, lon;
-		double minLat = Integer.MAX_VALUE, minLon = Integer.MAX_VALUE;
-		double maxLat = Integer.MIN_VALUE, maxLon = Integer.MIN_VALUE;
-		double[] dim1, dim2;
-
-		// Iterating through the input file
-		while (line != null) {
-
-			// Reading intersection (vertex) data
-			if (line.charAt(0) == 'i') {
-				line = line.substring(line.indexOf("	") + 1);
-
-				// Add key to dictionary
-				key = line.substring(0, line.indexOf("	"));
-				line = line.substring(line.indexOf("	") + 1);
-				D.put(key, i);
-				RevD.put(i, key);
-				i++;
-
-				// Add intersection to vertex list
-				lat = Double.parseDouble(line.substring(0, line.indexOf("	")));
-				lon = Double.parseDouble(line.substring(line.indexOf("	") + 1));
-				V.add(new double[] { lat, lon, 0 });
-
-				// Check for max and min coordinates
-				if (lat > maxLat)
-					maxLat = lat;
-				else if (lat < minLat)
-					minLat = lat;
-				if (lon > maxLon)
-					maxLon = lon;
-				else if (lon < minLon)
-					minLon = lon;
-
-				// Reading road (edge) data
-			} else if (line.charAt(0) == 'r') {
-				line = line.substring(line.indexOf("	") + 1);
-
-				// Add road to graph
-				key = line.substring(0, line.indexOf("	"));
-				line = line.substring(line.indexOf("	") + 1);
-				u = D.get(line.substring(0, line.indexOf("	")));
-				v = D.get(line.substring(line.indexOf("	") + 1));
-				dim1 = V.get(u);
-				dim2 = V.get(v);
-				E.add(new double[] { u, v, Utility.haversine(dim1[0], dim1[1], dim2[0], dim2[1]) });
-			}
-
-			line = reader.readLine();
-
-		}
-
-		reader.close();
-
-		// Record max/min latitudes and longitudes
-		mapBounds[0] = minLat;
-		mapBounds[1] = minLon;
-		mapBounds[2] = maxLat;
-		mapBounds[3] = maxLon;
-
-		// Using edge list to create graph
-		Graph G = new Graph(i);
-		for (double[] e : E)
-			G.addEdge((int) e[0], (int) e[1], e[2]);
-
-		return G;
+		return MapParser.parse(path, D, RevD, V, mapBounds);
 	}
 }
@@ -0,0 +1,163 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * <p>
+ * Generates made-up map data text files of any size, for
+ * measuring how fast maps load and routes are found.
+ * </p>
+ *
+ * <p>
+ * The map is a grid of intersections about a hundred meters
+ * apart around Rochester, each moved slightly at random. Most
+ * neighbouring intersections are joined by a road, and a few
+ * by a diagonal one, so that the map is mostly but not always
+ * connected like a real street map.
+ * </p>
+ *
+ * <p>
+ * A random geometric map has no grid. Intersections are scattered
+ * at random over a square of the same density, and every two that
+ * are closer than a set distance are joined by a road, giving about
+ * six roads per intersection but a far less regular street pattern,
+ * with dead ends, long detours and separate pieces.
+ * </p>
+ *
+ * @author Kyounghan (Kevin) Min
+ */
+public class SyntheticMap {
+
+	/**
+	 * Writes a grid map with the given number of intersections across and down.
+	 *
+	 * @param path   The path to the output text file.
+	 * @param width  Intersections across.
+	 * @param height Intersections down.
+	 * @param seed   Seed for the random jitter and missing roads.
+	 * @throws IOException If the file could not be written.
+	 */
+	public static void grid(String path, int width, int height, long seed) throws IOException {
+		Random random = new Random(seed);
+		try(BufferedWriter out = new BufferedWriter(new FileWriter(path), 1 << 16)) {
+			for(int y = 0; y < height; y++) {
+				for(int x = 0; x < width; x++) {
+					double lat = 43 + y*0.001 + (random.nextDouble() - 0.5)*6e-4;
+					double lon = -77.6 + x*0.0013 + (random.nextDouble() - 0.5)*6e-4;
+					out.write("i\tg" + x + "_" + y + "\t" + String.format(Locale.ROOT, "%.6f\t%.6f", lat, lon));
+					out.newLine();
+				}
+			}
+
+			int k = 0;
+			for(int y = 0; y < height; y++) {
+				for(int x = 0; x < width; x++) {
+					if(x + 1 < width && random.nextDouble() < 0.9)
+						road(out, k++, x, y, x + 1, y);
+					if(y + 1 < height && random.nextDouble() < 0.9)
+						road(out, k++, x, y, x, y + 1);
+					if(x + 1 < width && y + 1 < height && random.nextDouble() < 0.1)
+						road(out, k++, x, y, x + 1, y + 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes a random geometric map with the given number of intersections.
+	 *
+	 * @param path          The path to the output text file.
+	 * @param intersections Number of intersections.
+	 * @param seed          Seed for the random positions.
+	 * @throws IOException If the file could not be written.
+	 */
+	public static void geometric(String path, int intersections, long seed) throws IOException {
+		Random random = new Random(seed);
+		int n = intersections;
+		double side = Math.max(1, Math.sqrt(n)); // in grid spacings
+		double radius = Math.sqrt(6 / Math.PI); // about six neighbours within it
+		double[] x = new double[n], y = new double[n];
+		for(int i = 0; i < n; i++) {
+			x[i] = random.nextDouble() * side;
+			y[i] = random.nextDouble() * side;
+		}
+
+		// Sorting the intersections into square cells as wide as the radius,
+		// so each only has to be compared with those in the cells around it
+		int cells = Math.max(1, (int) (side / radius));
+		double scale = cells / side;
+		int[] start = new int[cells*cells + 1], order = new int[n];
+		int i, j, c, cx, cy;
+		for(i = 0; i < n; i++)
+			start[cell(x[i], y[i], scale, cells) + 1]++;
+		for(c = 0; c < cells*cells; c++)
+			start[c + 1] += start[c];
+		int[] fill = Arrays.copyOf(start, cells*cells);
+		for(i = 0; i < n; i++)
+			order[fill[cell(x[i], y[i], scale, cells)]++] = i;
+
+		try(BufferedWriter out = new BufferedWriter(new FileWriter(path), 1 << 16)) {
+			for(i = 0; i < n; i++) {
+				double lat = 43 + y[i]*0.001, lon = -77.6 + x[i]*0.0013;
+				out.write("i\tp" + i + "\t" + String.format(Locale.ROOT, "%.6f\t%.6f", lat, lon));
+				out.newLine();
+			}
+
+			int k = 0;
+			double r2 = radius*radius, dx, dy;
+			for(i = 0; i < n; i++) {
+				cx = (int) Math.min(cells - 1, x[i] * scale);
+				cy = (int) Math.min(cells - 1, y[i] * scale);
+				for(int ny = Math.max(0, cy - 1); ny <= Math.min(cells - 1, cy + 1); ny++) {
+					for(int nx = Math.max(0, cx - 1); nx <= Math.min(cells - 1, cx + 1); nx++) {
+						c = ny*cells + nx;
+						for(int a = start[c]; a < start[c + 1]; a++) {
+							j = order[a];
+							if(j <= i) continue;
+							dx = x[j] - x[i];
+							dy = y[j] - y[i];
+							if(dx*dx + dy*dy < r2) {
+								out.write("r\tR" + k++ + "\tp" + i + "\tp" + j);
+								out.newLine();
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static int cell(double x, double y, double scale, int cells) {
+		return (int) Math.min(cells - 1, y * scale) * cells + (int) Math.min(cells - 1, x * scale);
+	}
+
+	private static void road(BufferedWriter out, int k, int x1, int y1, int x2, int y2) throws IOException {
+		out.write("r\tR" + k + "\tg" + x1 + "_" + y1 + "\tg" + x2 + "_" + y2);
+		out.newLine();
+	}
+
+	/**
+	 * Writes a synthetic map from the command line:
+	 * {@code <output_path> <width> <height> [seed]} for a grid map, or
+	 * {@code <output_path> --geometric <intersections> [seed]} for a
+	 * random geometric one.
+	 *
+	 * @param args The arguments.
+	 * @throws IOException If the file could not be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length < 3) {
+			System.out.println("Usage: SyntheticMap <output_path> <width> <height> [seed]");
+			System.out.println("   or: SyntheticMap <output_path> --geometric <intersections> [seed]");
+			return;
+		}
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 7;
+		if(args[1].equals("--geometric"))
+			geometric(args[0], Integer.parseInt(args[2]), seed);
+		else
+			grid(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]), seed);
+	}
+}
@@ -0,0 +1,243 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+/**
+ * <p>
+ * Bounded cache of map tiles, drawn on demand by
+ * background worker threads.
+ * </p>
+ *
+ * <p>
+ * Asking for a tile that is not cached returns nothing at
+ * once and queues the tile to be drawn. When it is done,
+ * the listener given on creation is told, so the viewer can
+ * draw again. The queue is last in first out, so after fast
+ * zooming or panning the tiles asked for most recently, which
+ * are the ones on screen, are drawn before older ones.
+ * </p>
+ *
+ * <p>
+ * At most a fixed number of tiles are kept in memory, and the
+ * least recently used one is dropped first. If a spill directory
+ * is given, dropped tiles are written there as PNG images and
+ * read back instead of drawn again. File names include a key of
+ * the map, so several maps may share a directory. Each file is
+ * written under a temporary name and then renamed, so a tile
+ * is never read back half written.
+ * </p>
+ *
+ * @author Kyounghan (Kevin) Min
+ */
+public class TileCache {
+	private TileRenderer renderer;
+	private File spill;
+	private String mapKey;
+	private Runnable listener;
+	private LinkedHashMap<Long, BufferedImage> tiles; // in access order
+	private Set<Long> pending;
+	private long droppedKey; // tile just dropped from memory, to be spilled
+	private BufferedImage dropped;
+	private ThreadPoolExecutor workers;
+
+	/**
+	 * Creates an empty tile cache with one worker per core.
+	 *
+	 * @param renderer The tile renderer.
+	 * @param capacity Largest number of tiles kept in memory.
+	 * @param spill    Directory to keep dropped tiles in, or null to forget them.
+	 * @param mapKey   Key of the map, used in file names.
+	 * @param listener Told whenever a tile is done, on a worker thread.
+	 */
+	TileCache(TileRenderer renderer, int capacity, File spill, String mapKey, Runnable listener) {
+		this.renderer = renderer;
+		this.spill = spill;
+		this.mapKey = mapKey;
+		this.listener = listener;
+		if(spill != null) spill.mkdirs();
+
+		tiles = new LinkedHashMap<Long, BufferedImage>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> eldest) {
+				if(size() <= capacity) return false;
+				droppedKey = eldest.getKey();
+				dropped = eldest.getValue();
+				return true;
+			}
+		};
+		pending = ConcurrentHashMap.newKeySet();
+
+		// Last in first out, so the latest tiles asked for are drawn first
+		int threads = Runtime.getRuntime().availableProcessors();
+		workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new LinkedBlockingDeque<Runnable>() {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public boolean offer(Runnable r) {
+						return offerFirst(r);
+					}
+				}, r -> {
+					Thread t = new Thread(r, "tile-worker");
+					t.setDaemon(true);
+					return t;
+				});
+	}
+
+	private static long key(int z, int tx, int ty) {
+		return (long) z << 48 | (long) tx << 24 | ty;
+	}
+
+	/**
+	 * Returns a tile if it is in memory, or queues it to be
+	 * drawn (or read from the spill directory) if it is not.
+	 *
+	 * @param z  The level.
+	 * @param tx The column of the tile.
+	 * @param ty The row of the tile.
+	 * @return The tile, or null if it is not ready yet.
+	 */
+	public BufferedImage get(int z, int tx, int ty) {
+		long key = key(z, tx, ty);
+		BufferedImage I;
+		synchronized(tiles) {
+			I = tiles.get(key);
+		}
+		if(I == null && pending.add(key)) {
+			workers.execute(() -> {
+				try {
+					store(key, fetch(z, tx, ty, key));
+				} finally {
+					pending.remove(key);
+				}
+				listener.run();
+			});
+		}
+		return I;
+	}
+
+	/**
+	 * Returns a tile if it is in memory, without queueing it.
+	 *
+	 * @param z  The level.
+	 * @param tx The column of the tile.
+	 * @param ty The row of the tile.
+	 * @return The tile, or null if it is not in memory.
+	 */
+	public BufferedImage peek(int z, int tx, int ty) {
+		synchronized(tiles) {
+			return tiles.get(key(z, tx, ty));
+		}
+	}
+
+	/**
+	 * Returns a tile, drawing it on the calling thread
+	 * if it is not cached.
+	 *
+	 * @param z  The level.
+	 * @param tx The column of the tile.
+	 * @param ty The row of the tile.
+	 * @return The tile.
+	 */
+	public BufferedImage load(int z, int tx, int ty) {
+		long key = key(z, tx, ty);
+		BufferedImage I = peek(z, tx, ty);
+		if(I == null) {
+			I = fetch(z, tx, ty, key);
+			store(key, I);
+		}
+		return I;
+	}
+
+	private BufferedImage fetch(int z, int tx, int ty, long key) {
+		if(spill != null) {
+			File f = file(key);
+			if(f.exists()) {
+				try {
+					BufferedImage I = ImageIO.read(f);
+					if(I != null) return I;
+				} catch (IOException e) {
+					// Drawing it again instead
+				}
+			}
+		}
+		return renderer.render(z, tx, ty);
+	}
+
+	private void store(long key, BufferedImage I) {
+		long spillKey;
+		BufferedImage spillTile;
+		synchronized(tiles) {
+			tiles.put(key, I);
+			spillKey = droppedKey;
+			spillTile = dropped;
+			dropped = null;
+		}
+
+		// Writing outside the lock, as it is slow
+		if(spill != null && spillTile != null) save(spillKey, spillTile);
+	}
+
+	private File file(long key) {
+		return new File(spill, mapKey + "_" + (key >>> 48) + "_" + (key >>> 24 & 0xFFFFFF) + "_" + (key & 0xFFFFFF) + ".png");
+	}
+
+	private void save(long key, BufferedImage I) {
+		File f = file(key);
+		if(f.exists()) return;
+		File temp = null;
+		try {
+			temp = File.createTempFile(mapKey + "_", ".tmp", spill);
+			if(!ImageIO.write(I, "png", temp))
+				throw new IOException("No PNG writer for tile " + f.getName() + ".");
+			try {
+				Files.move(temp.toPath(), f.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			if(temp != null) temp.delete();
+		}
+	}
+
+	/**
+	 * Returns the number of tiles in memory.
+	 *
+	 * @return The number of tiles.
+	 */
+	public int getSize() {
+		synchronized(tiles) {
+			return tiles.size();
+		}
+	}
+
+	/**
+	 * Drops every tile queued but not yet being drawn.
+	 */
+	public void cancelPending() {
+		workers.getQueue().clear();
+		pending.clear();
+	}
+
+	/**
+	 * Stops the worker threads.
+	 */
+	public void shutdown() {
+		workers.shutdownNow();
+	}
+}
@@ -0,0 +1,146 @@
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * <p>
+ * Draws the roads of a map as square image tiles, one
+ * zoom level at a time, without any window.
+ * </p>
+ *
+ * <p>
+ * At level z the whole map is 2^z tiles across its longer
+ * side, keeping the shape of the map in degrees like the
+ * map window does, so every level has twice the detail of
+ * the one before. A tile is drawn from the roads the road
+ * index finds around it, and roads no longer than a pixel
+ * are plotted straight into the image instead of drawn as
+ * lines. Tiles are independent of each other and of the
+ * window, so they may be drawn on any number of threads
+ * at once, or timed on their own.
+ * </p>
+ *
+ * @author Kyounghan (Kevin) Min
+ */
+public class TileRenderer {
+	public static final int TILE = 256; // pixels per side
+	public static final int MAX_LEVEL = 20;
+
+	private RoadIndex index;
+	private double xA, yA; // map width and height relative to its longer side
+	private Color roadColor;
+	private BasicStroke roadStroke;
+
+	/**
+	 * Creates a renderer drawing black roads one pixel wide.
+	 *
+	 * @param index     The road index of the map.
+	 * @param mapBounds Coordinate maxima and minima of map.
+	 */
+	TileRenderer(RoadIndex index, double[] mapBounds) {
+		this(index, mapBounds, Color.black, 1);
+	}
+
+	/**
+	 * Creates a renderer.
+	 *
+	 * @param index     The road index of the map.
+	 * @param mapBounds Coordinate maxima and minima of map.
+	 * @param roadColor The road color.
+	 * @param roadWidth The road width in pixels.
+	 */
+	TileRenderer(RoadIndex index, double[] mapBounds, Color roadColor, int roadWidth) {
+		this.index = index;
+		double xL = Math.abs(mapBounds[1]-mapBounds[3]), yL = Math.abs(mapBounds[0]-mapBounds[2]);
+		double L = Math.max(xL, yL);
+		xA = L == 0 ? 1 : xL / L;
+		yA = L == 0 ? 1 : yL / L;
+		this.roadColor = roadColor;
+		roadStroke = new BasicStroke(roadWidth);
+	}
+
+	/**
+	 * Returns the width of the whole map at a level.
+	 *
+	 * @param z The level.
+	 * @return The width in pixels.
+	 */
+	public double getWidth(int z) {
+		return TILE * (double) (1L << z) * xA;
+	}
+
+	/**
+	 * Returns the height of the whole map at a level.
+	 *
+	 * @param z The level.
+	 * @return The height in pixels.
+	 */
+	public double getHeight(int z) {
+		return TILE * (double) (1L << z) * yA;
+	}
+
+	/**
+	 * Returns the number of tiles across the map at a level.
+	 *
+	 * @param z The level.
+	 * @return The number of columns.
+	 */
+	public int getColumns(int z) {
+		return Math.max(1, (int) Math.ceil(getWidth(z) / TILE));
+	}
+
+	/**
+	 * Returns the number of tiles down the map at a level.
+	 *
+	 * @param z The level.
+	 * @return The number of rows.
+	 */
+	public int getRows(int z) {
+		return Math.max(1, (int) Math.ceil(getHeight(z) / TILE));
+	}
+
+	/**
+	 * Draws one tile.
+	 *
+	 * @param z  The level.
+	 * @param tx The column of the tile.
+	 * @param ty The row of the tile.
+	 * @return The tile image.
+	 */
+	public BufferedImage render(int z, int tx, int ty) {
+		BufferedImage I = new BufferedImage(TILE, TILE, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2d = I.createGraphics();
+		g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g2d.setColor(Color.white);
+		g2d.fillRect(0, 0, TILE, TILE);
+		g2d.setColor(roadColor);
+		g2d.setStroke(roadStroke);
+
+		// Pixel = map units * scale - tile corner
+		double xS = getWidth(z), yS = getHeight(z);
+		double xO = -(double) tx * TILE, yO = -(double) ty * TILE;
+
+		// A pixel of margin, so that lines crossing the edge are not cut short
+		int[] roads = index.query((-xO-1)/xS, (-yO-1)/yS, (TILE-xO+1)/xS, (TILE-yO+1)/yS);
+		int[] pixels = ((DataBufferInt) I.getRaster().getDataBuffer()).getData();
+		int rgb = roadColor.getRGB();
+		int x1, y1, x2, y2;
+		for(int r : roads) {
+			x1 = (int) Math.floor(index.getX(index.getFrom(r))*xS + xO);
+			y1 = (int) Math.floor(index.getY(index.getFrom(r))*yS + yO);
+			x2 = (int) Math.floor(index.getX(index.getTo(r))*xS + xO);
+			y2 = (int) Math.floor(index.getY(index.getTo(r))*yS + yO);
+			if(Math.abs(x2-x1) <= 1 && Math.abs(y2-y1) <= 1) {
+				if(x1 >= 0 && y1 >= 0 && x1 < TILE && y1 < TILE) pixels[y1*TILE + x1] = rgb;
+				if(x2 >= 0 && y2 >= 0 && x2 < TILE && y2 < TILE) pixels[y2*TILE + x2] = rgb;
+			} else {
+				g2d.drawLine(x1, y1, x2, y2);
+			}
+		}
+		g2d.dispose();
+		return I;
+	}
+}
@@ -1,9 +1,4 @@
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
-
-import java.awt.event.MouseEvent;
-import java.awt.event.MouseListener;
+import java.util.Arrays;
 
 /**
  * @author Nathaniel Webber
@@ -38,96 +33,329 @@ public class Utility {
 	 * Calculates the shortest path between two
 	 * vertices using Dijkstra's algorithm.
 	 * 
+	 * The frontier is kept in an indexed binary heap,
+	 * so each step takes O(log |V|) instead of a scan
+	 * over every reached vertex, and the search ends as
+	 * soon as the ending vertex is settled. All search
+	 * state lives in S, which must be freshly reset.
+	 * 
 	 * @param G The graph.
+	 * @param S The search space.
 	 * @param u Starting vertex.
 	 * @param v Ending vertex.
-	 * @return A list of path vertices.
+	 * @return The route, or null if u and v are
+	 * not connected.
 	 */
-	public static LinkedList<Integer> Dijkstra(Graph G, int u, int v) {
-		G.setMark(u, 0);
-		List<Integer> vList = new ArrayList<Integer>();
-		List<Integer> delList = new ArrayList<Integer>();
-		vList.add(u);
-		int i, n = G.getSize()-1, p = u;
-		int[] pArr = new int[n+1];
-		for(i = 0; i < n+1; i++) 
-			pArr[i] = -1;
-		Edge E, minE;
-		double mark;
-		
-		// Traversing and marking the entire graph
-		while(true) {
+	public static Route Dijkstra(Graph G, SearchSpace S, int u, int v) {
+		IndexedHeap H = S.getHeap();
+		int j, e, w;
+		double d;
+		
+		S.reach(u, 0, -1);
+		
+		// Settling vertices in order of distance until v is reached
+		while(!H.isEmpty()) {
+			j = H.pop();
+			S.settle(j);
+			if(j == v) break;
 			
-			// Finding the vertex which will have the smallest marking
-			minE = new Edge(-1, Double.MAX_VALUE);
-			for(Integer j : vList) {
-				E = G.getMinEdge(j);
-				mark = G.getMark(j);
-				
-				if(E == null) {
-					delList.add(j);
-					continue;
-				}
-								
-				if(mark+E.weight < minE.weight) {
-					minE = E;
-					p = j;
-				}
+			for(e = G.edgeStart(j); e < G.edgeEnd(j); e++) {
+				w = G.getTarget(e);
+				if(S.isSettled(w)) continue;
+				d = S.getDist(j) + G.getWeight(e);
+				if(d < S.getDist(w)) S.reach(w, d, j);
 			}
-			
-			// End if graph is discontinuous
-			if(minE.next == -1) break;
-			
-			// Add mark to vertex
-			G.setMark(minE.next, G.getMark(p)+minE.weight);
-			pArr[minE.next] = p;
-			vList.add(minE.next);
-			
-			// Remove vertices with its edges fully traversed
-			for(Integer j : delList)
-				vList.remove(j);
-			delList.clear();
 		}
 		
-		// Reverse-pathing to find the shortest ordered vertex path
-		LinkedList<Integer> path = new LinkedList<Integer>();
-		path.add(v);
-		int j = v;
-		
-		while(pArr[j] != u) {
-			if(pArr[j] == -1) return null;
-			path.addFirst(pArr[j]);
-			j = pArr[j];
-		}
+		// End if graph is discontinuous
+		if(!S.isSettled(v)) return null;
 		
-		path.addFirst(u);
-		return path;
+		// Reverse-pathing to find the shortest ordered vertex path
+		return Route.fromTree(S, v);
 	}
-}
-
-/**
- * Implements mouse input listening function.
- * 
- * @author Kyounghan (Kevin) Min
- */
-class MouseInput extends StreetMap implements MouseListener {
 	
-	public void mouseClicked(MouseEvent e) {
-		if(e.getButton() == MouseEvent.BUTTON1) mouse = "LC";
-		else if(e.getButton() == MouseEvent.BUTTON3) mouse = "RC";
+	/**
+	 * Calculates the shortest paths from vertex u to
+	 * every vertex it is connected to, using Dijkstra's
+	 * algorithm. The distances and the shortest path
+	 * tree are left in S, which must be freshly reset.
+	 * 
+	 * @param G The graph.
+	 * @param S The search space.
+	 * @param u Starting vertex.
+	 */
+	public static void DijkstraAll(Graph G, SearchSpace S, int u) {
+		IndexedHeap H = S.getHeap();
+		int j, e, w;
+		double d;
+		
+		S.reach(u, 0, -1);
+		while(!H.isEmpty()) {
+			j = H.pop();
+			S.settle(j);
+			for(e = G.edgeStart(j); e < G.edgeEnd(j); e++) {
+				w = G.getTarget(e);
+				if(S.isSettled(w)) continue;
+				d = S.getDist(j) + G.getWeight(e);
+				if(d < S.getDist(w)) S.reach(w, d, j);
+			}
+		}
 	}
 
-	public void mousePressed(MouseEvent e) {
-	}
+	/**
+	 * Calculates the shortest paths from vertex u to
+	 * many target vertices at once, using Dijkstra's
+	 * algorithm. The search ends as soon as every
+	 * target is settled, or when nothing more can be
+	 * reached. Distances are left in S, which must be
+	 * freshly reset.
+	 *
+	 * @param G The graph.
+	 * @param S The search space.
+	 * @param u Starting vertex.
+	 * @param isTarget Whether each vertex is a target.
+	 * @param targets Number of distinct targets.
+	 */
+	public static void DijkstraMany(Graph G, SearchSpace S, int u, boolean[] isTarget, int targets) {
+		IndexedHeap H = S.getHeap();
+		int j, e, w;
+		double d;
 
-	public void mouseReleased(MouseEvent e) {
-	}
+		S.reach(u, 0, -1);
+		while(!H.isEmpty()) {
+			j = H.pop();
+			S.settle(j);
+			if(isTarget[j] && --targets == 0) break;
 
-	public void mouseEntered(MouseEvent e) {
+			for(e = G.edgeStart(j); e < G.edgeEnd(j); e++) {
+				w = G.getTarget(e);
+				if(S.isSettled(w)) continue;
+				d = S.getDist(j) + G.getWeight(e);
+				if(d < S.getDist(w)) S.reach(w, d, j);
+			}
+		}
 	}
 
-	public void mouseExited(MouseEvent e) {
+	/**
+	 * Finds every vertex within a distance of any of
+	 * the starting vertices, using Dijkstra's algorithm.
+	 * 
+	 * Vertices farther than the limit are never queued,
+	 * and the search ends as soon as the nearest vertex
+	 * left is beyond it, so only the area asked for is
+	 * searched. All search state lives in S, which must
+	 * be freshly reset.
+	 * 
+	 * @param G The graph.
+	 * @param S The search space.
+	 * @param sources Starting vertices.
+	 * @param limit The largest distance.
+	 * @return The vertices within the limit and their
+	 * distances, nearest first.
+	 */
+	public static Isochrone DijkstraWithin(Graph G, SearchSpace S, int[] sources, double limit) {
+		IndexedHeap H = S.getHeap();
+		int[] found = new int[16];
+		double[] dist = new double[16];
+		int j, e, w, k = 0;
+		double d;
+		
+		for(int u : sources)
+			S.reach(u, 0, -1);
+		
+		while(!H.isEmpty() && H.peekKey() <= limit) {
+			j = H.pop();
+			S.settle(j);
+			if(k == found.length) {
+				found = Arrays.copyOf(found, 2*k);
+				dist = Arrays.copyOf(dist, 2*k);
+			}
+			found[k] = j;
+			dist[k++] = S.getDist(j);
+			
+			for(e = G.edgeStart(j); e < G.edgeEnd(j); e++) {
+				w = G.getTarget(e);
+				if(S.isSettled(w)) continue;
+				d = S.getDist(j) + G.getWeight(e);
+				if(d <= limit && d < S.getDist(w)) S.reach(w, d, j);
+			}
+		}
+		
+		return new Isochrone(found, dist, k, limit);
 	}
-
 	
+	/**
+	 * Finds the k facilities nearest to vertex u by
+	 * road, using Dijkstra's algorithm. The search ends
+	 * as soon as the k-th facility is settled, or when
+	 * nothing more can be reached. The shortest path
+	 * tree is left in S, which must be freshly reset.
+	 * 
+	 * @param G The graph.
+	 * @param S The search space.
+	 * @param u Starting vertex.
+	 * @param F The facilities.
+	 * @param k Number of facilities to find.
+	 * @return The facilities found, nearest first.
+	 */
+	public static int[] DijkstraNearest(Graph G, SearchSpace S, int u, Facilities F, int k) {
+		IndexedHeap H = S.getHeap();
+		int[] found = new int[k];
+		int j, e, w, f = 0;
+		double d;
+		
+		S.reach(u, 0, -1);
+		while(f < k && !H.isEmpty()) {
+			j = H.pop();
+			S.settle(j);
+			if(F.contains(j)) found[f++] = j;
+			
+			for(e = G.edgeStart(j); e < G.edgeEnd(j); e++) {
+				w = G.getTarget(e);
+				if(S.isSettled(w)) continue;
+				d = S.getDist(j) + G.getWeight(e);
+				if(d < S.getDist(w)) S.reach(w, d, j);
+			}
+		}
+		
+		return f == k ? found : Arrays.copyOf(found, f);
+	}
+	
+	/**
+	 * Calculates the shortest path between two
+	 * vertices using A* search.
+	 * 
+	 * The heap is ordered by distance so far plus the
+	 * heuristic's estimate of the rest. The heuristic
+	 * must never overestimate and must be consistent
+	 * (the estimate drops by no more than the length of
+	 * any road taken), so each vertex is settled at most
+	 * once, like in Dijkstra.
+	 * 
+	 * @param G The graph.
+	 * @param h The heuristic.
+	 * @param S The search space.
+	 * @param u Starting vertex.
+	 * @param v Ending vertex.
+	 * @return The route, or null if u and v are
+	 * not connected.
+	 */
+	public static Route AStar(Graph G, Heuristic h, SearchSpace S, int u, int v) {
+		IndexedHeap H = S.getHeap();
+		int j, e, w;
+		double d;
+		
+		S.reach(u, 0, -1, h.estimate(u, v));
+		
+		// Settling vertices in order of estimated total distance until v is reached
+		while(!H.isEmpty()) {
+			j = H.pop();
+			S.settle(j);
+			if(j == v) break;
+			
+			for(e = G.edgeStart(j); e < G.edgeEnd(j); e++) {
+				w = G.getTarget(e);
+				if(S.isSettled(w)) continue;
+				d = S.getDist(j) + G.getWeight(e);
+				if(d < S.getDist(w))
+					S.reach(w, d, j, d + h.estimate(w, v));
+			}
+		}
+		
+		// End if graph is discontinuous
+		if(!S.isSettled(v)) return null;
+		
+		return Route.fromTree(S, v);
+	}
+	
+	/**
+	 * Calculates the shortest path between two
+	 * vertices using bidirectional Dijkstra.
+	 * 
+	 * One search grows from u and another from v,
+	 * always advancing the one whose next vertex is
+	 * closer. Whenever an edge joins the two searches,
+	 * the length of the path through it is a candidate.
+	 * Once the two smallest heap keys add up to at least
+	 * the best candidate, no path can be shorter, so the
+	 * search stops. The edges are undirected, so the
+	 * backward search walks the same edges.
+	 * 
+	 * @param G The graph.
+	 * @param F The forward search space.
+	 * @param B The backward search space.
+	 * @param u Starting vertex.
+	 * @param v Ending vertex.
+	 * @return The route, or null if u and v are
+	 * not connected.
+	 */
+	public static Route BidirectionalDijkstra(Graph G, SearchSpace F, SearchSpace B, int u, int v) {
+		IndexedHeap HF = F.getHeap(), HB = B.getHeap();
+		SearchSpace S, T;
+		IndexedHeap H;
+		int j, e, w, meet = -1;
+		double d, best = Double.POSITIVE_INFINITY;
+		
+		F.reach(u, 0, -1);
+		B.reach(v, 0, -1);
+		if(u == v) {
+			meet = u;
+			best = 0;
+		}
+		
+		while(!HF.isEmpty() && !HB.isEmpty() && HF.peekKey() + HB.peekKey() < best) {
+			
+			// Advancing the side whose next vertex is closer
+			if(HF.peekKey() <= HB.peekKey()) {
+				S = F;
+				T = B;
+				H = HF;
+			} else {
+				S = B;
+				T = F;
+				H = HB;
+			}
+			
+			j = H.pop();
+			S.settle(j);
+			
+			for(e = G.edgeStart(j); e < G.edgeEnd(j); e++) {
+				w = G.getTarget(e);
+				if(S.isSettled(w)) continue;
+				d = S.getDist(j) + G.getWeight(e);
+				if(d < S.getDist(w)) S.reach(w, d, j);
+				
+				// Checking the path through this edge
+				d += T.getDist(w);
+				if(d < best) {
+					best = d;
+					meet = w;
+				}
+			}
+		}
+		
+		// End if graph is discontinuous
+		if(meet == -1) return null;
+		
+		// Joining the forward path to u with the backward path to v
+		int k = 0, i;
+		for(j = meet; j != -1; j = F.getParent(j))
+			k++;
+		for(j = B.getParent(meet); j != -1; j = B.getParent(j))
+			k++;
+		
+		int[] path = new int[k];
+		i = 0;
+		for(j = meet; j != -1; j = F.getParent(j))
+			path[i++] = j;
+		for(int a = 0, b = i-1; a < b; a++, b--) {
+			j = path[a];
+			path[a] = path[b];
+			path[b] = j;
+		}
+		for(j = B.getParent(meet); j != -1; j = B.getParent(j))
+			path[i++] = j;
+		
+		return Route.fromPath(G, path, F.getSettledCount() + B.getSettledCount());
+	}
 }